@@ -0,0 +1,38 @@
+package yap.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Reports how long the calling thread was kept busy per operation, as an extra "stallUs" column.
+ * Benchmarks call {@link #record(long)} with the nanoseconds the caller could not do anything else.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class CallerStall {
+
+  public double stallUs;
+
+  private long totalNanos;
+  private long calls;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    totalNanos = 0;
+    calls = 0;
+  }
+
+  void record(long nanos) {
+    totalNanos += nanos;
+    calls++;
+  }
+
+  @TearDown(Level.Iteration)
+  public void publish() {
+    stallUs = calls == 0 ? 0 : totalNanos / 1000.0 / calls;
+  }
+}
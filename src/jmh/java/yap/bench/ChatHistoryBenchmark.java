@@ -0,0 +1,75 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.ChatHistory;
+import yap.ChatMessage;
+
+/**
+ * Cost of a long chat session on the model behind the chat window, without a toolkit: each
+ * invocation adds {@value #MESSAGES} messages of 1 KiB to a fresh history capped at {@code limit},
+ * spilling the rest to a file. The score is the time per message, which should not grow with the
+ * session; the "peakHeapMb" column should stay near {@code limit} messages, not {@value
+ * #MESSAGES}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ChatHistoryBenchmark {
+
+  private static final int MESSAGES = 50_000;
+
+  @Param({"1000"})
+  public int limit;
+
+  private final String text = "x".repeat(1024);
+  private Path dir;
+
+  @Setup(Level.Trial)
+  public void createDir() throws IOException {
+    dir = Files.createTempDirectory("yap-bench");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES)
+  public ChatHistory longSession(HeapPeak heap) throws IOException {
+    Path spill = dir.resolve("history.txt");
+    Files.deleteIfExists(spill);
+    ChatHistory history = new ChatHistory(limit, spill);
+    for (int i = 0; i < MESSAGES; i++) {
+      history.add(new ChatMessage(text + i, i % 2 == 0));
+    }
+    history.close();
+    return history;
+  }
+}
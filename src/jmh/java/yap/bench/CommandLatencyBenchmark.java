@@ -0,0 +1,100 @@
+package yap.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.core.CommandEngine;
+import yap.core.CommandResult;
+import yap.core.GuiYapAdapter;
+import yap.io.Storage;
+import yap.task.TaskList;
+
+/**
+ * Per-command latency of a GUI keystroke. {@code engine} calls {@link CommandEngine} directly,
+ * {@code adapter} goes through {@link GuiYapAdapter}, and {@code legacyCapture} repeats what the
+ * old adapter did around every command: swap {@code System.out} for a buffer, reach the handler
+ * through {@link Method#invoke}, print, and restore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandLatencyBenchmark {
+
+  @Param({"find trip 4242", "due 2019-12-02", "help"})
+  public String command;
+
+  @Param({"10000"})
+  public int tasks;
+
+  private Path dir;
+  private GuiYapAdapter adapter;
+  private CommandEngine engine;
+  private Method execute;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, ReflectiveOperationException {
+    dir = Files.createTempDirectory("yap-bench");
+    Path file = dir.resolve("tasks.txt");
+    Datasets.writeTextFile(file, tasks);
+    adapter = new GuiYapAdapter(file.toString());
+    adapter.setUserName("bench");
+    engine = new CommandEngine(new TaskList(Datasets.tasks(tasks)), new Storage(file.toString()));
+    execute = CommandEngine.class.getMethod("execute", String.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    adapter.flush();
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public CommandResult engine() {
+    return engine.execute(command);
+  }
+
+  @Benchmark
+  public String adapter() {
+    return adapter.handle(command);
+  }
+
+  @Benchmark
+  public String legacyCapture() throws ReflectiveOperationException {
+    PrintStream originalOut = System.out;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+    try (PrintStream capture = new PrintStream(baos)) {
+      System.setOut(capture);
+      CommandResult result = (CommandResult) execute.invoke(engine, command);
+      System.out.print(result.render());
+    } finally {
+      System.setOut(originalOut);
+    }
+    return baos.toString();
+  }
+}
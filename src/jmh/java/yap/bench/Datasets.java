@@ -0,0 +1,66 @@
+package yap.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import yap.task.Task;
+
+/**
+ * Deterministic task data for benchmarks. The same seed always yields the same file, so runs on
+ * different commits measure identical inputs.
+ */
+final class Datasets {
+
+  static final long SEED = 9299L;
+
+  private static final String[] WORDS = {
+    "read", "book", "return", "project", "meeting", "buy", "food", "homework", "call", "mum",
+    "submit", "report", "gym", "lecture", "review", "notes", "pay", "rent", "plan", "trip"
+  };
+
+  private Datasets() {}
+
+  /** Writes {@code lines} tasks in the text save format, mixing todos, deadlines and events. */
+  static void writeTextFile(Path file, int lines) throws IOException {
+    Random rnd = new Random(SEED);
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < lines; i++) {
+        w.write(textLine(rnd, i));
+        w.newLine();
+      }
+    }
+  }
+
+  /** Returns the same tasks {@link #writeTextFile} would write, as objects. */
+  static List<Task> tasks(int count) {
+    Random rnd = new Random(SEED);
+    List<Task> out = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      out.add(LegacyTextLoader.parse(textLine(rnd, i)));
+    }
+    return out;
+  }
+
+  private static String textLine(Random rnd, int i) {
+    String status = rnd.nextInt(4) == 0 ? "1" : "0";
+    String name = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)] + " " + i;
+    String date = String.format("20%02d-%02d-%02d", 10 + rnd.nextInt(20), 1 + rnd.nextInt(12),
+        1 + rnd.nextInt(28));
+    switch (rnd.nextInt(3)) {
+      case 0:
+        return "T | " + status + " | " + name;
+      case 1:
+        return "D | " + status + " | " + name + " | " + date;
+      default:
+        int start = rnd.nextInt(22);
+        return "E | " + status + " | " + name + " | " + date + " | "
+            + String.format("%02d00 | %02d30", start, start + 1);
+    }
+  }
+}
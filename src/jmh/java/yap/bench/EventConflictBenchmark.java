@@ -0,0 +1,66 @@
+package yap.bench;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.task.Events;
+import yap.task.TaskList;
+
+/** Overlap checks on a list made only of events, a few per day over several years. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class EventConflictBenchmark {
+
+  @Param({"100000", "300000"})
+  public int events;
+
+  private TaskList list;
+  private Events probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random rnd = new Random(Datasets.SEED);
+    LocalDate first = LocalDate.of(2000, 1, 1);
+    list = new TaskList();
+    for (int i = 0; i < events; i++) {
+      int start = rnd.nextInt(22 * 60);
+      list.add(new Events("event " + i, first.plusDays(i / 8),
+          LocalTime.ofSecondOfDay(start * 60L), LocalTime.ofSecondOfDay((start + 30 + rnd.nextInt(90)) * 60L)));
+    }
+    probe = (Events) list.get(events / 2);
+  }
+
+  /** The check run after adding or editing an event. */
+  @Benchmark
+  public List<Integer> overlapsOfOne() {
+    return list.indicesOverlapping(probe);
+  }
+
+  /** The {@code conflicts} command. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public List<int[]> allConflicts() {
+    return list.conflictingPairs();
+  }
+}
@@ -0,0 +1,82 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.core.GuiYapAdapter;
+
+/**
+ * Time the JavaFX application thread is blocked per command, without a toolkit: the benchmark
+ * thread plays the FX thread. {@code blockingHandle} is the old path, where the window waited for
+ * {@link GuiYapAdapter#handle}; {@code offloadedSubmit} only pays for queueing the command on the
+ * engine thread. The "stallUs" column is the blocked time; the main score is the full round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FxStallBenchmark {
+
+  @Param({"list", "find trip 4242"})
+  public String command;
+
+  @Param({"100000"})
+  public int tasks;
+
+  private Path dir;
+  private GuiYapAdapter adapter;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("yap-bench");
+    Path file = dir.resolve("tasks.txt");
+    Datasets.writeTextFile(file, tasks);
+    adapter = new GuiYapAdapter(file.toString());
+    adapter.setUserName("bench");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    adapter.flush();
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public String blockingHandle(CallerStall stall) {
+    long start = System.nanoTime();
+    String reply = adapter.handle(command);
+    stall.record(System.nanoTime() - start);
+    return reply;
+  }
+
+  @Benchmark
+  public String offloadedSubmit(CallerStall stall) {
+    long start = System.nanoTime();
+    CompletableFuture<GuiYapAdapter.Reply> pending = adapter.submit(command);
+    stall.record(System.nanoTime() - start);
+    return pending.join().text(); // keeps the queue from growing across invocations
+  }
+}
@@ -0,0 +1,58 @@
+package yap.bench;
+
+import java.util.Optional;
+
+import yap.parser.Parser.Kind;
+import yap.parser.Parser.Parsed;
+
+/** The original Parser.parse (lowercased copy, startsWith chain, regex for edit), as a baseline. */
+final class LegacyParser {
+
+  /**
+   * Parses raw user input into a Parsed representation.
+   *
+   * @param raw the raw input string
+   * @return a Parsed object containing command kind and remaining text
+   */
+  Parsed parse(String raw) {
+    String s = Optional.ofNullable(raw).orElse("").trim();
+    if (s.isEmpty()) return new Parsed(Kind.UNKNOWN, "");
+    String lower = s.toLowerCase();
+
+    if (lower.equals("list") || lower.equals("show")) {
+      return new Parsed(Kind.SHOW, "");
+    } else if (lower.startsWith("list ") || lower.startsWith("show ")) {
+      return new Parsed(Kind.SHOW, s.substring(5).trim()); // paging options
+    } else if (lower.startsWith("add")) {
+      return new Parsed(Kind.ADD, s.substring(3).trim()); // supports your add-mode trigger
+    }  else if (lower.equals("edit") || lower.matches("^edit\\s+.*")) {
+    String rest = lower.equals("edit") ? "" : s.replaceFirst("(?i)^edit\\s+", "").trim();
+    return new Parsed(Kind.EDIT, rest);
+  } else if (lower.startsWith("delete")) {
+      return new Parsed(Kind.DELETE, s.substring(6).trim());
+    } else if (lower.startsWith("complete") || lower.startsWith("done ")) {
+      String rest = lower.startsWith("done ") ? s.substring(4).trim() : s.substring(8).trim();
+      return new Parsed(Kind.COMPLETE, rest);
+    } else if (lower.equals("help")) {
+      return new Parsed(Kind.HELP, "");
+    } else if (lower.equals("exit") || lower.equals("quit")) {
+      return new Parsed(Kind.EXIT, "");
+    } else if (lower.equals("done")) { // end add-mode
+      return new Parsed(Kind.ADD, "done");
+    } else if (lower.startsWith("find ")) {
+      String keyword = s.substring(5).trim();
+      return new Parsed(Kind.FIND, keyword);
+    } else if (lower.equals("find")) {
+      return new Parsed(Kind.FIND, "");
+    } else if (lower.equals("due") || lower.startsWith("due ")) {
+      return new Parsed(Kind.DUE, s.substring(3).trim());
+    } else if (lower.equals("between") || lower.startsWith("between ")) {
+      return new Parsed(Kind.BETWEEN, s.substring(7).trim());
+    } else if (lower.equals("overdue")) {
+      return new Parsed(Kind.OVERDUE, "");
+    } else if (lower.equals("conflicts")) {
+      return new Parsed(Kind.CONFLICTS, "");
+    }
+    return new Parsed(Kind.UNKNOWN, s);
+  }
+}
@@ -0,0 +1,70 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import yap.task.Deadlines;
+import yap.task.Events;
+import yap.task.Task;
+import yap.task.ToDos;
+
+/** The original Storage.load (readAllLines + regex split), kept as a benchmark baseline. */
+final class LegacyTextLoader {
+
+  private LegacyTextLoader() {}
+
+  static List<Task> load(Path file) throws IOException {
+    List<Task> out = new ArrayList<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      String raw = line.trim();
+      if (raw.isEmpty() || raw.startsWith("#")) {
+        continue;
+      }
+      Task t = parse(raw);
+      if (t != null) {
+        out.add(t);
+      }
+    }
+    return out;
+  }
+
+  static Task parse(String line) {
+    String[] parts = Arrays.stream(line.split("\\|")).map(String::trim).toArray(String[]::new);
+    if (parts.length < 3) {
+      return null;
+    }
+    try {
+      Task t;
+      switch (parts[0]) {
+        case "T":
+          t = new ToDos(parts[2]);
+          break;
+        case "D":
+          if (parts.length < 4) {
+            return null;
+          }
+          t = new Deadlines(parts[2], parts[3]);
+          break;
+        case "E":
+          if (parts.length < 6) {
+            return null;
+          }
+          t = new Events(parts[2], parts[3], parts[4], parts[5]);
+          break;
+        default:
+          return null;
+      }
+      if ("1".equals(parts[1])) {
+        t.setStatus(true);
+      }
+      return t;
+    } catch (RuntimeException ex) {
+      return null;
+    }
+  }
+}
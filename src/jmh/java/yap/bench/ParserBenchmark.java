@@ -0,0 +1,51 @@
+package yap.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.parser.Parser;
+
+/**
+ * {@link Parser#parse} against the original implementation in {@link LegacyParser}, one input
+ * shape per parameter. Run with the gc profiler (on by default) to see allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({
+    "list",
+    "edit 3 n/read the book d/2019-12-02",
+    "done 4",
+    "t return book to the library",
+    "conflicts"
+  })
+  public String input;
+
+  private final Parser parser = new Parser();
+  private final LegacyParser legacy = new LegacyParser();
+
+  @Benchmark
+  public Parser.Parsed scanner() {
+    return parser.parse(input);
+  }
+
+  @Benchmark
+  public Parser.Parsed legacy() {
+    return legacy.parse(input);
+  }
+}
@@ -0,0 +1,81 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.core.YapException;
+import yap.io.Storage;
+import yap.task.Task;
+
+/**
+ * Text against binary snapshots: save and load throughput for the same tasks. File sizes are
+ * printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StorageFormatBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int tasks;
+
+  @Param({"TEXT", "BINARY"})
+  public Storage.Format format;
+
+  private Path dir;
+  private String file;
+  private List<Task> data;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, YapException {
+    dir = Files.createTempDirectory("yap-bench");
+    file = dir.resolve("tasks.txt").toString();
+    data = Datasets.tasks(tasks);
+    storage().save(data);
+    System.out.printf("%n%s snapshot of %d tasks: %d bytes%n", format, tasks, Files.size(Path.of(file)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (var files = Files.list(dir)) {
+      for (Path p : (Iterable<Path>) files::iterator) {
+        Files.delete(p);
+      }
+    }
+    Files.delete(dir);
+  }
+
+  @Benchmark
+  public void save() throws YapException {
+    storage().save(data);
+  }
+
+  @Benchmark
+  public List<Task> load() throws YapException {
+    return storage().load();
+  }
+
+  private Storage storage() {
+    return new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, 0, format);
+  }
+}
@@ -0,0 +1,68 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.core.YapException;
+import yap.io.Storage;
+import yap.task.Task;
+
+/**
+ * Cold load of a text save file: streaming {@link Storage#load()} against the original
+ * readAllLines + split loader. Run with {@code ./gradlew jmh}; the peakHeapMb column comes from
+ * {@link HeapPeak}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StorageLoadBenchmark {
+
+  @Param({"100000", "1000000", "10000000"})
+  public int lines;
+
+  private Path dir;
+  private Path file;
+
+  @Setup(Level.Trial)
+  public void writeFile() throws IOException {
+    dir = Files.createTempDirectory("yap-bench");
+    file = dir.resolve("tasks.txt");
+    Datasets.writeTextFile(file, lines);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(dir);
+  }
+
+  @Benchmark
+  public List<Task> streaming(HeapPeak heap) throws YapException {
+    return new Storage(file.toString()).load();
+  }
+
+  @Benchmark
+  public List<Task> legacyReadAllLines(HeapPeak heap) throws IOException {
+    return LegacyTextLoader.load(file);
+  }
+}
@@ -0,0 +1,35 @@
+package yap.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import yap.task.ColumnarTasks;
+import yap.task.Task;
+import yap.task.TaskList;
+
+/**
+ * Prints the heap held per task by each way of keeping tasks, measured by walking the object graph
+ * with JOL: the task objects alone, a {@link TaskList} with its search and date indexes, and a
+ * {@link ColumnarTasks}. Not a JMH benchmark, as nothing is timed; run it with {@code ./gradlew
+ * footprint}, optionally with {@code -Ptasks=<n>}.
+ */
+public final class TaskFootprint {
+
+  private TaskFootprint() {}
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    List<Task> tasks = Datasets.tasks(count);
+    report("task objects", count, new ArrayList<>(tasks));
+    report("TaskList", count, new TaskList(tasks));
+    report("ColumnarTasks", count, new ColumnarTasks(tasks));
+  }
+
+  private static void report(String label, int count, Object root) {
+    GraphLayout layout = GraphLayout.parseInstance(root);
+    System.out.printf("%-14s %,12d bytes %,10d objects %8.1f bytes/task%n", label,
+        layout.totalSize(), layout.totalCount(), layout.totalSize() / (double) count);
+  }
+}
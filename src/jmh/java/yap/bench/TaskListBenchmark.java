@@ -0,0 +1,141 @@
+package yap.bench;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.task.Task;
+import yap.task.TaskList;
+
+/** Read paths of {@link TaskList} on a large list. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TaskListBenchmark {
+
+  @Param({"10000", "100000"})
+  public int tasks;
+
+  private static final LocalDate MONTH_START = LocalDate.of(2019, 12, 1);
+  private static final LocalDate MONTH_END = LocalDate.of(2019, 12, 31);
+
+  private TaskList list;
+  private String[] names;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    list = new TaskList(Datasets.tasks(tasks));
+    names = new String[1024];
+    Random rnd = new Random(Datasets.SEED);
+    for (int i = 0; i < names.length; i++) {
+      names[i] = list.get(1 + rnd.nextInt(tasks)).getName();
+    }
+  }
+
+  private String nextName() {
+    next = (next + 1) & (names.length - 1);
+    return names[next];
+  }
+
+  /** A word that matches a few percent of the list. */
+  @Benchmark
+  public List<Integer> findKeyword() {
+    return list.findIndices("gym");
+  }
+
+  /** A unique suffix: a single hit. */
+  @Benchmark
+  public List<Integer> findRare() {
+    return list.findIndices("trip 4242");
+  }
+
+  /** What {@code complete <name>} does. */
+  @Benchmark
+  public Task completeByName() {
+    Task t = list.get(list.indexOfName(nextName()));
+    t.markDone();
+    return t;
+  }
+
+  /**
+   * What {@code delete <name>} does; the task is appended again so the list keeps its size (the
+   * names in the pool stay unique, so the lookups keep hitting).
+   */
+  @Benchmark
+  public Task deleteByName() {
+    Task t = list.remove(list.indexOfName(nextName()));
+    list.add(t);
+    return t;
+  }
+
+  /**
+   * {@code delete 1}: every later task shifts down one slot. The task is appended again so the list
+   * keeps its size.
+   */
+  @Benchmark
+  public Task removeFront() {
+    Task t = list.remove(1);
+    list.add(t);
+    return t;
+  }
+
+  /** {@code between} over one month. */
+  @Benchmark
+  public List<Integer> betweenMonth() {
+    return list.indicesBetween(MONTH_START, MONTH_END);
+  }
+
+  /**
+   * What every save used to pay: a full copy of the list. Run with the gc profiler to compare
+   * gc.alloc.rate.norm against {@link #snapshotAfterEdit()}.
+   */
+  @Benchmark
+  public List<Task> fullCopy() {
+    return new ArrayList<>(list.snapshot());
+  }
+
+  /** A task edit followed by a snapshot: allocates one small view, independent of list size. */
+  @Benchmark
+  public List<Task> snapshotAfterEdit() {
+    list.get(1).setName(nextName() + " ");
+    return list.snapshot();
+  }
+
+  /** A substring inside words. */
+  @Benchmark
+  public List<Integer> findSubstring() {
+    return list.findIndices("epor");
+  }
+
+  /** {@code show} on an unchanged list: every line comes from the per-task cache. */
+  @Benchmark
+  public String show() {
+    return list.render();
+  }
+
+  /** {@code show} after one edit: only the edited task's line is rebuilt. */
+  @Benchmark
+  public String showAfterEdit() {
+    list.get(1).setName(nextName() + " ");
+    return list.render();
+  }
+}
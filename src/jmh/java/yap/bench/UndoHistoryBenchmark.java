@@ -0,0 +1,144 @@
+package yap.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yap.core.CommandEngine;
+import yap.io.Storage;
+import yap.task.TaskList;
+
+/**
+ * Memory and time of a long undo history on a large list. {@code record} runs {@code steps}
+ * commands (edits, completions, deletes and adds in turn) and reports the heap still held after a
+ * full GC in the "retainedKb" and "bytesPerStep" columns. {@code undoAll} records the same steps
+ * and then takes every one back, so its time minus {@code record}'s is the cost of undoing.
+ * Keeping a copy of the list per step instead would hold {@code steps * tasks} references, about
+ * 4 GB for the defaults.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UndoHistoryBenchmark {
+
+  /** A fresh engine on a large list for each iteration, journaling off. */
+  @State(Scope.Thread)
+  public static class Session {
+    @Param({"100000"})
+    public int tasks;
+
+    @Param({"10000"})
+    public int steps;
+
+    private Path dir;
+    private CommandEngine engine;
+
+    @Setup(Level.Trial)
+    public void createDir() throws IOException {
+      dir = Files.createTempDirectory("yap-bench");
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      // Journaling off: only the in-memory history is measured, not disk writes.
+      engine = new CommandEngine(
+          new TaskList(Datasets.tasks(tasks)), new Storage(dir.resolve("tasks.txt").toString()));
+      engine.setJournaling(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+    }
+
+    void runSteps() {
+      for (int i = 0; i < steps; i++) {
+        int target = 1 + (i * 7919) % engine.tasks().size();
+        switch (i % 4) {
+          case 0:
+            engine.execute("edit " + target + " n/renamed " + i);
+            break;
+          case 1:
+            engine.execute("complete " + target);
+            break;
+          case 2:
+            engine.execute("delete " + target);
+            break;
+          default:
+            engine.execute("add");
+            engine.execute("t added " + i);
+            engine.execute("done");
+            break;
+        }
+      }
+    }
+  }
+
+  /** Heap held after a benchmark has run, relative to just after its session was set up. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Retained {
+    public long retainedKb;
+    public long bytesPerStep;
+
+    private long before;
+
+    @Setup(Level.Iteration)
+    public void start(Session session) { // taking the session makes JMH set it up first
+      before = usedAfterGc();
+    }
+
+    void stop(int steps) {
+      long retained = Math.max(0, usedAfterGc() - before);
+      retainedKb = retained >> 10;
+      bytesPerStep = retained / steps;
+    }
+
+    private static long usedAfterGc() {
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      System.gc();
+      System.gc();
+      return memory.getHeapMemoryUsage().getUsed();
+    }
+  }
+
+  @Benchmark
+  public CommandEngine record(Session session, Retained heap) {
+    session.runSteps();
+    heap.stop(session.steps);
+    return session.engine;
+  }
+
+  @Benchmark
+  public CommandEngine undoAll(Session session) {
+    session.runSteps();
+    for (int i = 0; i < session.steps; i++) {
+      session.engine.execute("undo");
+    }
+    return session.engine;
+  }
+}
@@ -0,0 +1,52 @@
+package yap;
+
+import java.util.function.Consumer;
+
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.Image;
+
+/**
+ * List cell that draws a {@link ChatMessage} as a dialog bubble.
+ *
+ * <p>The {@link DialogBox} is built once per cell and refilled whenever the list view recycles
+ * the cell for another message, so only the visible rows ever hold a bubble.</p>
+ */
+public class ChatCell extends ListCell<ChatMessage> {
+    private final DialogBox bubble = new DialogBox();
+    private final Image userImage;
+    private final Image botImage;
+    private final Consumer<ChatMessage> onShown;
+
+    /**
+     * Creates a cell that shows the given avatars.
+     *
+     * @param userImage avatar next to the user's messages.
+     * @param botImage  avatar next to Yap's messages.
+     * @param onShown   told about every message this cell starts showing.
+     */
+    public ChatCell(Image userImage, Image botImage, Consumer<ChatMessage> onShown) {
+        this.userImage = userImage;
+        this.botImage = botImage;
+        this.onShown = onShown;
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        // Let the label wrap to the list's width instead of widening the cell.
+        bubble.prefWidthProperty().bind(widthProperty().subtract(20));
+    }
+
+    @Override
+    protected void updateItem(ChatMessage item, boolean empty) {
+        super.updateItem(item, empty);
+        if (empty || item == null) {
+            setGraphic(null);
+            return;
+        }
+        if (item.isFromUser()) {
+            bubble.show(item.getText(), userImage, true);
+        } else {
+            bubble.show(item.getText(), botImage, false);
+        }
+        setGraphic(bubble);
+        onShown.accept(item);
+    }
+}
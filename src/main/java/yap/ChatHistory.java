@@ -0,0 +1,111 @@
+package yap;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Messages shown in the chat window, capped at a fixed number.
+ *
+ * <p>Once the cap is reached, adding a message evicts the oldest one. Evicted messages are
+ * appended to a spill file when one is configured, and dropped otherwise. Must be used from the
+ * JavaFX application thread, like the {@code ListView} it backs.</p>
+ */
+public final class ChatHistory {
+    /** Number of messages kept when {@code yap.historyLimit} is not set. */
+    public static final int DEFAULT_LIMIT = 500;
+
+    private final ObservableList<ChatMessage> messages = FXCollections.observableArrayList();
+    private final int limit;
+    private final Path spillFile;
+    private BufferedWriter spill;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param limit     maximum number of messages kept in memory; at least 1.
+     * @param spillFile where evicted messages are appended, or {@code null} to drop them.
+     */
+    public ChatHistory(int limit, Path spillFile) {
+        assert limit >= 1 : "History limit must be positive: " + limit;
+        this.limit = limit;
+        this.spillFile = spillFile;
+    }
+
+    /** Returns the live list of retained messages, oldest first. */
+    public ObservableList<ChatMessage> messages() {
+        return messages;
+    }
+
+    /**
+     * Appends a message, evicting the oldest ones if the cap is exceeded.
+     *
+     * @param m message to add.
+     */
+    public void add(ChatMessage m) {
+        messages.add(m);
+        int excess = messages.size() - limit;
+        if (excess > 0) {
+            spill(excess);
+            messages.remove(0, excess);
+        }
+    }
+
+    /**
+     * Swaps a retained message for another in the same place, e.g. a pending reply for the real
+     * one. Does nothing if {@code old} has already been evicted.
+     *
+     * @param old         message to replace.
+     * @param replacement message to show instead.
+     */
+    public void replace(ChatMessage old, ChatMessage replacement) {
+        for (int i = messages.size() - 1; i >= 0; i--) { // pending replies sit near the end
+            if (messages.get(i) == old) {
+                messages.set(i, replacement);
+                return;
+            }
+        }
+    }
+
+    /** Flushes and closes the spill file, if one was opened. */
+    public void close() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close chat history file: " + e.getMessage());
+        }
+        spill = null;
+    }
+
+    private void spill(int count) {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                if (spillFile.getParent() != null) {
+                    Files.createDirectories(spillFile.getParent());
+                }
+                spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (int i = 0; i < count; i++) {
+                ChatMessage m = messages.get(i);
+                spill.write(m.isFromUser() ? "> " : "< ");
+                spill.write(m.getText().replace("\n", "\n  "));
+                spill.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write chat history, dropping old messages: " + e.getMessage());
+        }
+    }
+}
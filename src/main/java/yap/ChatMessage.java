@@ -0,0 +1,53 @@
+package yap;
+
+import yap.core.GuiYapAdapter;
+
+/**
+ * One line of the chat history: what was said and who said it.
+ *
+ * <p>Immutable; a pending reply is replaced by a new message once the answer arrives. A reply that
+ * holds the first page of a long listing keeps the adapter's reply, so the next page can be
+ * loaded when the message scrolls into view.</p>
+ */
+public final class ChatMessage {
+    private final String text;
+    private final boolean fromUser;
+    private final GuiYapAdapter.Reply continuation; // null unless more pages can be loaded
+
+    public ChatMessage(String text, boolean fromUser) {
+        this(text, fromUser, null);
+    }
+
+    /**
+     * Creates one of Yap's messages from an adapter reply.
+     *
+     * @param reply what the adapter returned.
+     */
+    public ChatMessage(GuiYapAdapter.Reply reply) {
+        this(reply.text(), false, reply.hasMore() ? reply : null);
+    }
+
+    private ChatMessage(String text, boolean fromUser, GuiYapAdapter.Reply continuation) {
+        this.text = text;
+        this.fromUser = fromUser;
+        this.continuation = continuation;
+    }
+
+    /** Returns the reply to continue from, or null if this message has nothing more to load. */
+    public GuiYapAdapter.Reply getContinuation() {
+        return continuation;
+    }
+
+    /** Returns the same message without its continuation. */
+    public ChatMessage withoutContinuation() {
+        return new ChatMessage(text, fromUser, null);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isFromUser() {
+        return fromUser;
+    }
+}
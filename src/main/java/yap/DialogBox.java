@@ -1,14 +1,10 @@
 package yap;
 
 import java.io.IOException;
-import java.util.Collections;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -19,6 +15,9 @@ import javafx.scene.layout.HBox;
  *
  * <p>Uses the fx:root pattern (FXML loads into this HBox). Fields annotated with
  * {@code @FXML} are injected from {@code DialogBox.fxml}.</p>
+ *
+ * <p>A bubble is reusable: {@link ChatCell} builds one per visible row and calls
+ * {@link #show(String, Image, boolean)} each time the row displays another message.</p>
  */
 public class DialogBox extends HBox {
 
@@ -29,12 +28,9 @@ public class DialogBox extends HBox {
     private ImageView displayPicture;
 
     /**
-     * Constructs a dialog box by loading {@code DialogBox.fxml} and then setting the text and image.
-     *
-     * @param text Message to display.
-     * @param img  Avatar image.
+     * Constructs an empty dialog box by loading {@code DialogBox.fxml}.
      */
-    public DialogBox(String text, Image img) {
+    public DialogBox() {
         try {
             FXMLLoader fxmlLoader =
                     new FXMLLoader(getClass().getResource("/view/DialogBox.fxml"));
@@ -45,43 +41,25 @@ public class DialogBox extends HBox {
             // In SE-EDU, failing to load the resource is considered unrecoverable.
             throw new AssertionError("Failed to load DialogBox.fxml: " + e.getMessage(), e);
         }
-
-        dialog.setText(text);
-        displayPicture.setImage(img);
-    }
-
-    /**
-     * Returns a right-aligned dialog box representing the user.
-     *
-     * @param text Message text.
-     * @param img  User avatar image.
-     * @return Configured dialog box.
-     */
-    public static DialogBox getUserDialog(String text, Image img) {
-        return new DialogBox(text, img);
     }
 
     /**
-     * Returns a left-aligned dialog box representing Yap (the bot).
+     * Fills the bubble with a message. The user's messages sit on the right with the avatar after
+     * the text; Yap's sit on the left with the avatar first.
      *
-     * @param text Message text.
-     * @param img  Bot avatar image.
-     * @return Configured dialog box flipped to left alignment.
-     */
-    public static DialogBox getYapDialog(String text, Image img) {
-        DialogBox db = new DialogBox(text, img);
-        db.flip();
-        return db;
-    }
-
-    /**
-     * Flips the dialog box so the image is on the left and text on the right.
+     * @param text     Message text.
+     * @param img      Avatar image.
+     * @param fromUser Whether the user sent the message.
      */
-    private void flip() {
-        setAlignment(Pos.TOP_LEFT);
-        ObservableList<Node> children = FXCollections.observableArrayList(getChildren());
-        Collections.reverse(children);
-        getChildren().setAll(children);
+    public void show(String text, Image img, boolean fromUser) {
+        dialog.setText(text);
+        displayPicture.setImage(img);
+        if (fromUser) {
+            setAlignment(Pos.TOP_RIGHT);
+            getChildren().setAll(dialog, displayPicture);
+        } else {
+            setAlignment(Pos.TOP_LEFT);
+            getChildren().setAll(displayPicture, dialog);
+        }
     }
 }
-
@@ -14,6 +14,9 @@ import yap.core.GuiYapAdapter;
  */
 public class Main extends Application {
 
+    private GuiYapAdapter engine;
+    private MainWindow controller;
+
     @Override
     public void start(Stage stage) throws Exception {
         // Load the root defined in MainWindow.fxml (controller is declared in FXML)
@@ -21,8 +24,9 @@ public class Main extends Application {
         AnchorPane root = fxmlLoader.load();
 
         // Get controller and inject the engine that guarantees CLI-identical behaviour
-        MainWindow controller = fxmlLoader.getController();
-        controller.setEngine(new GuiYapAdapter("data/tasks.txt"));
+        controller = fxmlLoader.getController();
+        engine = new GuiYapAdapter("data/tasks.txt");
+        controller.setEngine(engine);
 
         // Create and show the scene
         Scene scene = new Scene(root);
@@ -31,6 +35,17 @@ public class Main extends Application {
         stage.show();
     }
 
+    /** Makes sure saves still queued on the background writer reach the disk. */
+    @Override
+    public void stop() throws Exception {
+        if (controller != null) {
+            controller.closeHistory();
+        }
+        if (engine != null) {
+            engine.flush();
+        }
+    }
+
     /**
      * Standard launcher when running without a separate module launcher.
      *
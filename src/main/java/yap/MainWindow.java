@@ -2,45 +2,68 @@
 package yap;
 
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import yap.core.GuiYapAdapter;
+import yap.io.Ui;
 
+/**
+ * Controller for the chat window.
+ *
+ * <p>Messages live in a bounded {@link ChatHistory} shown through a {@code ListView}, so only the
+ * visible rows are laid out. Set {@code yap.historyLimit} to change how many messages are kept,
+ * and {@code yap.historySpill} to a file path to keep evicted messages on disk.</p>
+ */
 public class MainWindow extends AnchorPane {
-    @FXML private ScrollPane scrollPane;
-    @FXML private VBox dialogContainer;
+    /** Shown in Yap's bubble while the command is still running. */
+    private static final String PENDING_TEXT = "...";
+
+    @FXML private ListView<ChatMessage> chatList;
     @FXML private TextField userInput;
     @FXML private Button sendButton;
 
     private GuiYapAdapter engine;
     private boolean nameProvided = false;
+    private boolean isLoadingMore = false;
+
+    private final ChatHistory history = new ChatHistory(
+            Integer.getInteger("yap.historyLimit", ChatHistory.DEFAULT_LIMIT),
+            System.getProperty("yap.historySpill") == null
+                    ? null : Path.of(System.getProperty("yap.historySpill")));
 
     private Image userImage;
     private Image botImage;
 
     @FXML
     public void initialize() {
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
-
         // Load images here (after classpath is ready) and fail clearly if missing.
         URL userUrl = getClass().getResource("/images/User.png");
         URL botUrl  = getClass().getResource("/images/Yap.png");
         userImage = new Image(Objects.requireNonNull(userUrl, "Missing /images/User.png").toExternalForm());
         botImage  = new Image(Objects.requireNonNull(botUrl,  "Missing /images/Yap.png").toExternalForm());
+
+        chatList.setItems(history.messages());
+        chatList.setCellFactory(view -> new ChatCell(userImage, botImage, this::onShown));
     }
 
     /** Injects the adapter and shows the CLI-equivalent greeting. */
     public void setEngine(GuiYapAdapter adapter) {
         this.engine = adapter;
-        dialogContainer.getChildren().add(
-                DialogBox.getYapDialog(engine.getGreetingAndPrompt(), botImage));
+        post(new ChatMessage(engine.getGreetingAndPrompt(), false));
+    }
+
+    /** Closes the spill file of the chat history; call when the window goes away. */
+    public void closeHistory() {
+        history.close();
     }
 
     @FXML
@@ -50,19 +73,59 @@ public class MainWindow extends AnchorPane {
             return;
         }
 
-        dialogContainer.getChildren().add(DialogBox.getUserDialog(input, userImage));
+        post(new ChatMessage(input, true));
+        userInput.clear();
 
-        String reply = !nameProvided
-                ? engine.setUserName(input.trim())
-                : engine.handle(input);
-        nameProvided = true;
+        if (!nameProvided) {
+            nameProvided = true;
+            post(new ChatMessage(engine.setUserName(input.trim()), false));
+            return;
+        }
 
-        dialogContainer.getChildren().add(DialogBox.getYapDialog(reply, botImage));
-        userInput.clear();
+        // The command runs on the engine thread; fill in the reply bubble when it is done.
+        ChatMessage pending = new ChatMessage(PENDING_TEXT, false);
+        post(pending);
+        engine.submit(input).whenComplete((reply, error) ->
+                Platform.runLater(() -> showReply(pending, reply, error)));
+    }
 
+    /** Loads the next page of a cut-short listing once its bubble comes into view. */
+    private void onShown(ChatMessage m) {
+        if (m.getContinuation() != null && !isLoadingMore) {
+            // Cells are being laid out right now; change the list afterwards.
+            Platform.runLater(() -> loadMore(m));
+        }
+    }
+
+    private void loadMore(ChatMessage m) {
+        List<ChatMessage> messages = history.messages();
+        if (isLoadingMore || messages.isEmpty() || messages.get(messages.size() - 1) != m) {
+            return; // only the newest listing continues; older ones were interrupted
+        }
+        isLoadingMore = true;
+        history.replace(m, m.withoutContinuation());
+        engine.submitMore(m.getContinuation()).whenComplete((reply, error) ->
+                Platform.runLater(() -> {
+                    isLoadingMore = false;
+                    history.add(error == null ? new ChatMessage(reply) : errorMessage(error));
+                }));
+    }
+
+    private void post(ChatMessage m) {
+        history.add(m);
+        chatList.scrollTo(history.messages().size() - 1);
+    }
+
+    private void showReply(ChatMessage pending, GuiYapAdapter.Reply reply, Throwable error) {
+        history.replace(pending, error == null ? new ChatMessage(reply) : errorMessage(error));
         if (engine.isExit()) {
-            Stage s = (Stage) dialogContainer.getScene().getWindow();
+            Stage s = (Stage) chatList.getScene().getWindow();
             s.close();
         }
     }
+
+    private static ChatMessage errorMessage(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return new ChatMessage(Ui.ERROR_PREFIX + cause.getMessage(), false);
+    }
 }
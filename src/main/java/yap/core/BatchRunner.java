@@ -0,0 +1,117 @@
+package yap.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import yap.io.Storage;
+import yap.io.Ui;
+import yap.task.TaskList;
+
+/**
+ * Runs a file of commands without prompting, for bulk imports and scheduled jobs.
+ *
+ * <p>Responsibilities: feed each line of the script to a {@link CommandEngine} and print what it
+ * returns, without the name prompt or separator lines of the interactive CLI. Journaling is off
+ * for the run; the list is saved every {@code checkpointEvery} commands (0 means only at the end)
+ * and once more when the script ends or reaches {@code exit}. Blank lines and lines starting with
+ * {@code #} are skipped. With {@code yap.metricsFile} set, the run's {@link Metrics} are written
+ * there at the end.
+ */
+public final class BatchRunner {
+
+  private final Storage storage;
+  private final Ui ui;
+  private final int checkpointEvery;
+
+  /**
+   * Creates a runner around the given save file.
+   *
+   * @param dataFile path to the save file
+   * @param checkpointEvery commands between saves; 0 to save only at the end
+   */
+  public BatchRunner(String dataFile, int checkpointEvery) {
+    assert checkpointEvery >= 0 : "Checkpoint interval must not be negative";
+    this.storage = new Storage(dataFile, Storage.DEFAULT_COMPACT_THRESHOLD, 0, Yap.format());
+    this.storage.setColdBefore(Yap.coldBefore());
+    this.storage.setArchiveBefore(Yap.archiveBefore());
+    this.storage.enableSearchIndex();
+    this.ui = new Ui();
+    this.checkpointEvery = checkpointEvery;
+  }
+
+  /**
+   * Runs every command in {@code script} and reports the rate on standard error.
+   *
+   * @param script file with one command per line
+   * @return number of commands run
+   * @throws YapException if the save file cannot be read or written
+   */
+  public long run(Path script) throws YapException {
+    // Unlike the interactive CLI, never start from an empty list: the final save would wipe it.
+    Metrics metrics = new Metrics();
+    storage.setMetrics(metrics);
+    CommandEngine engine = new CommandEngine(new TaskList(storage.load()), storage, metrics);
+    engine.setJournaling(false);
+
+    long count = 0;
+    long start = System.nanoTime();
+    Throwable failure = null; // what stopped the run, if anything; a save failure is added to it
+    try (BufferedReader in = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+          continue;
+        }
+        CommandResult result = engine.execute(trimmed);
+        count++;
+        Yap.print(ui, engine, result);
+        if (result.isExit()) {
+          break;
+        }
+        if (checkpointEvery > 0 && count % checkpointEvery == 0) {
+          engine.save();
+        }
+      }
+    } catch (IOException e) {
+      YapException unreadable =
+          new YapException("Failed to read " + script + ": " + e.getMessage(), e);
+      failure = unreadable;
+      throw unreadable;
+    } catch (RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      save(engine, metrics, failure);
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.err.printf("Ran %d commands in %.3f s (%.0f commands/s)%n",
+        count, seconds, seconds > 0 ? count / seconds : 0.0);
+    return count;
+  }
+
+  /**
+   * Saves what the commands run so far did, as journaling is off. If the run already failed, a
+   * failure to save is attached to that one rather than hiding it.
+   */
+  private static void save(CommandEngine engine, Metrics metrics, Throwable failure)
+      throws YapException {
+    try {
+      engine.save();
+      engine.flush();
+      Path metricsFile = Metrics.dumpFile();
+      if (metricsFile != null) {
+        metrics.writeTo(metricsFile);
+      }
+    } catch (YapException ex) {
+      if (failure == null) {
+        throw ex;
+      }
+      failure.addSuppressed(ex);
+    }
+  }
+}
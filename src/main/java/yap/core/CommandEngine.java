@@ -0,0 +1,1014 @@
+package yap.core;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import yap.io.Archive;
+import yap.io.Storage;
+import yap.parser.Parser;
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.Events;
+import yap.task.Task;
+import yap.task.TaskList;
+import yap.task.ToDos;
+
+/**
+ * Runs parsed commands against a {@link TaskList} and its {@link Storage}.
+ *
+ * <p>Responsibilities: the command behaviour shared by every front end — Add mode, journaling each
+ * change, compacting the journal, and the wording of every reply. Nothing is printed here; each
+ * command returns a {@link CommandResult} that the CLI ({@link Yap}) or the GUI ({@link
+ * GuiYapAdapter}) presents in its own way.
+ *
+ * <p>Every command is timed into {@link Metrics} by kind, whichever front end sent it; {@code
+ * stats} prints the figures. Each one is also a {@code yap.Command} Flight Recorder event.
+ *
+ * <p>Every change to the list is also recorded in an {@link UndoHistory}, which {@code undo} and
+ * {@code redo} walk back and forth; what they do is journaled like any other change. A change is
+ * journaled before the list sees it, so a write that fails leaves the list and the history as
+ * they were, still in step with the save file.
+ *
+ * <p>When the storage keeps old months in cold shards, queries that reach past the loaded tasks
+ * ({@code find}, a full {@code list}, {@code due} and {@code between} on old dates, a number or
+ * name that is not loaded) read the shards they need first. Their tasks are appended after the
+ * loaded ones, so numbers already shown stay the same, and are journaled back into the main file.
+ * {@code restore} brings tasks back from the archive the same way; {@code archive find} only
+ * reads it.
+ *
+ * <p>Not thread-safe: commands are expected to arrive one at a time.
+ */
+public final class CommandEngine {
+
+  /** Tasks per page for {@code list page N}. */
+  public static final int LIST_PAGE_SIZE = 20;
+
+  private static final String LIST_USAGE = "Usage: list [page N] or list [--from I] [--limit K]";
+
+  private final TaskList tasks;
+  private final Storage storage;
+  private final Parser parser = new Parser();
+  private final Metrics metrics;
+  private final UndoHistory history = new UndoHistory(UndoHistory.DEFAULT_LIMIT);
+
+  private boolean inAddMode = false;
+  private boolean isJournaling = true;
+  private CommandResult out; // result of the command being run
+  private Parser.Parsed current; // the command being run, to label its undo step
+  private boolean wasAdding; // whether Add mode was on when it started
+  private long versionBefore; // list version when it started
+
+  public CommandEngine(TaskList tasks, Storage storage) {
+    this(tasks, storage, new Metrics());
+  }
+
+  /**
+   * Creates an engine that records into {@code metrics}, which is also attached to {@code
+   * storage}. Pass the one the storage was loaded with to keep the load time in the figures.
+   */
+  public CommandEngine(TaskList tasks, Storage storage, Metrics metrics) {
+    assert tasks != null && storage != null : "Engine needs a task list and a storage";
+    assert metrics != null : "Metrics must not be null";
+    this.tasks = tasks;
+    this.storage = storage;
+    this.metrics = metrics;
+    storage.setMetrics(metrics);
+    metrics.recordTaskCount(tasks.size());
+  }
+
+  /**
+   * Parses and runs one line of user input.
+   *
+   * @param raw the line as typed; null is treated as empty
+   * @return what the command produced
+   */
+  public CommandResult execute(String raw) {
+    return execute(parser.parse(raw == null ? "" : raw.trim()));
+  }
+
+  /**
+   * Runs one parsed command. Failures are reported as error entries on the result rather than
+   * thrown.
+   *
+   * @param cmd the parsed command
+   * @return what the command produced
+   */
+  public CommandResult execute(Parser.Parsed cmd) {
+    CommandEvent event = new CommandEvent();
+    event.begin();
+    long start = System.nanoTime();
+    wasAdding = inAddMode;
+    current = cmd;
+    versionBefore = tasks.version();
+    out = new CommandResult();
+    try {
+      switch (cmd.kind) {
+        case HELP:
+          out.message(helpText());
+          break;
+
+        case SHOW:
+          handleShow(cmd.rest);
+          break;
+
+        case ADD:
+          if (!inAddMode && !"done".equalsIgnoreCase(cmd.rest)) {
+            inAddMode = true;
+            out.message(
+                "Entered Add mode. Use:\n"
+                    + "  t <name>\n"
+                    + "  d <name>/<yyyy-MM-dd>\n"
+                    + "  e <name>/<yyyy-MM-dd>/<HHmm>/<HHmm>\n"
+                    + "Type 'done' to exit Add mode.");
+            break;
+          }
+          if (inAddMode) {
+            if ("done".equalsIgnoreCase(cmd.rest)) {
+              inAddMode = false;
+              out.message("Exited Add mode.");
+            } else {
+              handleAddLine(cmd.rest);
+              checkpoint();
+            }
+          } else {
+            out.error("Say 'add' first to enter Add mode.");
+          }
+          break;
+
+        case DELETE:
+          handleDelete(cmd.rest);
+          checkpoint();
+          break;
+
+        case COMPLETE:
+          handleComplete(cmd.rest);
+          checkpoint();
+          break;
+
+        case EXIT:
+          out.exit();
+          break;
+
+        case FIND:
+          handleFind(cmd.rest);
+          break;
+
+        case EDIT:
+          handleEdit(cmd.rest);
+          checkpoint();
+          break;
+
+        case DUE:
+          handleDue(cmd.rest);
+          break;
+
+        case BETWEEN:
+          handleBetween(cmd.rest);
+          break;
+
+        case OVERDUE:
+          handleOverdue();
+          break;
+
+        case CONFLICTS:
+          handleConflicts();
+          break;
+
+        case STATS:
+          out.message(metrics.report());
+          break;
+
+        case UNDO:
+          handleUndo(false);
+          checkpoint();
+          break;
+
+        case REDO:
+          handleUndo(true);
+          checkpoint();
+          break;
+
+        case ARCHIVE:
+          handleArchive(cmd.rest);
+          break;
+
+        case RESTORE:
+          handleRestore(cmd.rest);
+          checkpoint();
+          break;
+
+        case UNKNOWN:
+        default:
+          if (inAddMode) {
+            handleAddLine(cmd.rest);
+            checkpoint();
+          } else {
+            out.error("I don't understand. Type 'help' for commands.");
+          }
+      }
+    } catch (YapException | DateTimeException | IndexOutOfBoundsException ex) {
+      out.error(ex.getMessage());
+    }
+    CommandResult done = out;
+    out = null;
+    current = null;
+    // In Add mode a bare "t ..." line parses as UNKNOWN but is an add.
+    Parser.Kind kind = wasAdding && cmd.kind == Parser.Kind.UNKNOWN ? Parser.Kind.ADD : cmd.kind;
+    metrics.recordCommand(kind, System.nanoTime() - start);
+    metrics.recordTaskCount(tasks.size());
+    if (event.shouldCommit()) {
+      event.command = kind.name();
+      event.failed = done.hasErrors();
+      event.changedTasks = done.changedTasks().size();
+      event.taskCount = tasks.size();
+      event.commit();
+    }
+    return done;
+  }
+
+  /** Returns the task list commands run against. */
+  public TaskList tasks() {
+    return tasks;
+  }
+
+  /** Returns the figures this engine records into. */
+  public Metrics metrics() {
+    return metrics;
+  }
+
+  /** Returns whether Add mode is on, so front ends can adjust their prompt. */
+  public boolean isInAddMode() {
+    return inAddMode;
+  }
+
+  /**
+   * Waits for any background saves to reach the disk. If one of them failed, saves the whole list
+   * again so nothing is lost, and reports the failure only if that fails too.
+   */
+  public void flush() throws YapException {
+    try {
+      storage.flush();
+    } catch (YapException ex) {
+      if (!storage.needsCompaction()) {
+        throw ex;
+      }
+      save();
+      storage.flush();
+    }
+  }
+
+  /**
+   * Turns per-command journaling on or off. While it is off, changes stay in memory until {@link
+   * #save()} is called; batch runs use this to write once instead of once per command.
+   */
+  public void setJournaling(boolean isOn) {
+    isJournaling = isOn;
+  }
+
+  /** Writes the whole list as a fresh snapshot, dropping the journal. */
+  public void save() throws YapException {
+    storage.save(tasks.all());
+  }
+
+  /**
+   * Mutations are journaled by the handlers themselves; this folds the journal into a fresh
+   * snapshot once it has grown large enough.
+   */
+  private void checkpoint() throws YapException {
+    if (isJournaling && storage.needsCompaction()) {
+      save();
+    }
+  }
+
+  /** Records the change the current command made, once it is fully applied. */
+  private void remember(UndoHistory.Step step) {
+    history.record(step, versionBefore, tasks.version());
+  }
+
+  /**
+   * Reads the cold shards for the given dates and puts their tasks into the slots their
+   * placeholders held. Nothing is journaled: the save file still refers to the shards, and the
+   * tasks keep their numbers, so recorded undo steps stay valid.
+   *
+   * @param from earliest date needed, or null for no lower bound
+   * @param to latest date needed, or null for no upper bound
+   * @param isOpenOnly only months that still have unfinished tasks
+   */
+  private void reachCold(LocalDate from, LocalDate to, boolean isOpenOnly) throws YapException {
+    if (storage.coldTaskCount() > 0) {
+      fillIn(storage.loadCold(from, to, isOpenOnly));
+    }
+  }
+
+  /** Reads the cold shards of the placeholders among the given 1-based indices. */
+  private void reachColdAt(BitSet indices) throws YapException {
+    if (storage.coldTaskCount() == 0) {
+      return;
+    }
+    Set<YearMonth> months = new HashSet<>();
+    for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+      Task t = tasks.get(i);
+      if (t instanceof ColdTask) {
+        months.add(((ColdTask) t).getMonth());
+      }
+    }
+    if (!months.isEmpty()) {
+      fillIn(storage.loadCold(months));
+    }
+  }
+
+  private void fillIn(Map<ColdTask, Task> loaded) {
+    if (loaded.isEmpty()) {
+      return;
+    }
+    long before = tasks.version();
+    for (Map.Entry<ColdTask, Task> e : loaded.entrySet()) {
+      int index = tasks.indexOf(e.getKey());
+      if (index > 0) {
+        tasks.set(index, e.getValue());
+      }
+    }
+    history.indicesKept(before, tasks.version());
+    versionBefore = tasks.version(); // loading is not part of the command's own change
+  }
+
+  /** Describes the current command for undo messages, e.g. "delete 3" or "add t read book". */
+  private String currentLabel() {
+    if (wasAdding && (current.kind == Parser.Kind.UNKNOWN || current.kind == Parser.Kind.ADD)) {
+      return "add " + current.rest;
+    }
+    String name = current.kind.name().toLowerCase();
+    return current.rest.isEmpty() ? name : name + " " + current.rest;
+  }
+
+  private void journalAdd(Task t) throws YapException {
+    if (isJournaling) {
+      storage.appendAdd(t);
+    }
+  }
+
+  private void journalRemove(int index1Based) throws YapException {
+    if (isJournaling) {
+      storage.appendRemove(index1Based);
+    }
+  }
+
+  private void journalUpdate(int index1Based, Task t) throws YapException {
+    if (isJournaling) {
+      storage.appendUpdate(index1Based, t);
+    }
+  }
+
+  private String helpText() {
+    return String.join(
+            "\n",
+            "Commands:",
+            "  show / list                  - list tasks",
+            "  list page <n>                - list one page of " + LIST_PAGE_SIZE + " tasks",
+            "  list --from <i> --limit <k>  - list k tasks starting at number i",
+            "  add                          - enter Add mode; then use t/d/e lines",
+            "  delete <number|exact name>   - delete a task",
+            "  complete <number|exact name> - mark a task done",
+            "      Both also take many tasks at once: 10-500, 1,4,9, find:<keyword>, done",
+            "  edit <number|exact name> [n/NAME] [d/YYYY-MM-DD] [t/HHmm-HHmm]",
+            "      Rules:",
+            "        - Todo: only n/ allowed",
+            "        - Deadline: n/, d/ allowed",
+            "        - Event: n/, d/, and t/ allowed (t/ must be HHmm-HHmm)",
+            "  find <keyword>               - list tasks whose description contains the keyword",
+            "  due <yyyy-MM-dd>             - list deadlines and events on that date",
+            "  between <from> <to>          - list deadlines and events in a date range",
+            "  overdue                      - list unfinished deadlines and events before today",
+            "  conflicts                    - list events whose times overlap",
+            "  undo / redo                  - take back the last change, or make it again",
+            "  archive find <keyword>       - search tasks archived after being done a while",
+            "  restore <number>             - bring archived tasks back (numbers from archive find)",
+            "  stats                        - show how long each kind of command has taken",
+            "  help                         - show this help",
+            "  exit / quit                  - exit the program"
+    );
+  }
+
+  /**
+   * Lists the whole list, or part of it for {@code page N} or {@code --from I --limit K}. The
+   * tasks go on the result as a listing, so front ends can stream them or page through them.
+   */
+  private void handleShow(String args) throws YapException {
+    if (tasks.size() == 0) {
+      out.message("No tasks yet.");
+      return;
+    }
+    long from = 1;
+    long limit = tasks.size();
+    String[] parts = args.isBlank() ? new String[0] : args.trim().split("\\s+");
+    if (parts.length == 2 && parts[0].equalsIgnoreCase("page")) {
+      long page = parsePositive(parts[1]);
+      from = (page - 1) * LIST_PAGE_SIZE + 1;
+      limit = LIST_PAGE_SIZE;
+    } else {
+      if (parts.length % 2 != 0) throw new YapException(LIST_USAGE);
+      for (int i = 0; i < parts.length; i += 2) {
+        if (parts[i].equalsIgnoreCase("--from")) {
+          from = parsePositive(parts[i + 1]);
+        } else if (parts[i].equalsIgnoreCase("--limit")) {
+          limit = parsePositive(parts[i + 1]);
+        } else {
+          throw new YapException(LIST_USAGE);
+        }
+      }
+    }
+    if (from > tasks.size()) {
+      throw new YapException("There are only " + tasks.size() + " tasks.");
+    }
+    int count = (int) Math.min(limit, tasks.size() - from + 1);
+    BitSet shown = new BitSet();
+    shown.set((int) from, (int) from + count);
+    reachColdAt(shown);
+    int total = tasks.size();
+    if (from != 1 || count != total) {
+      out.message("Tasks " + from + "-" + (from + count - 1) + " of " + total + ":");
+    }
+    out.listing(tasks, (int) from, count);
+  }
+
+  private static long parsePositive(String s) throws YapException {
+    try {
+      long n = Long.parseLong(s);
+      if (n >= 1 && n <= Integer.MAX_VALUE) {
+        return n;
+      }
+    } catch (NumberFormatException ex) {
+      // fall through
+    }
+    throw new YapException("Expected a positive number: " + s);
+  }
+
+  private void handleAddLine(String line) throws YapException {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty()) {
+      out.error("Empty add line.");
+      return;
+    }
+
+    char kind = Character.toLowerCase(trimmed.charAt(0));
+    String payload = trimmed.length() > 1 ? trimmed.substring(1).trim() : "";
+
+    switch (kind) {
+      case 't':
+        if (payload.isEmpty()) throw new YapException("ToDo name is empty.");
+        addTask(new ToDos(payload));
+        break;
+      case 'd':
+        String[] parts = payload.split("/", 2);
+        if (parts.length != 2) throw new YapException("Deadline needs: d <name>/<yyyy-MM-dd>");
+        addTask(new Deadlines(parts[0].trim(), parts[1].trim()));
+        break;
+      case 'e':
+        String[] eParts = payload.split("/", 4);
+        if (eParts.length != 4)
+          throw new YapException("Event needs: e <name>/<yyyy-MM-dd>/<HHmm>/<HHmm>");
+        Events e =
+            new Events(eParts[0].trim(), eParts[1].trim(), eParts[2].trim(), eParts[3].trim());
+        addTask(e);
+        warnIfOverlapping(e);
+        break;
+      default:
+        throw new YapException("Unknown add-line type. Use t/d/e.");
+    }
+  }
+
+  private void addTask(Task t) throws YapException {
+    journalAdd(t);
+    tasks.add(t);
+    remember(UndoHistory.Step.inserted(currentLabel(), new int[] {tasks.size()}, List.of(t)));
+    out.changed(t);
+    out.message("Added: " + t);
+  }
+
+  private void handleFind(String keyword) throws YapException {
+    if (keyword == null || keyword.trim().isEmpty()) {
+      out.message("Please provide a keyword. Usage: find <keyword>");
+      return;
+    }
+    reachCold(null, null, false);
+    java.util.List<Integer> hits = tasks.findIndices(keyword);
+    if (hits.isEmpty()) {
+      out.message("No matching tasks found.");
+    } else {
+      out.message("Here are the matching tasks in your list:");
+      out.message(tasks.renderByIndices(hits));
+    }
+  }
+
+  private void handleDue(String arg) throws YapException {
+    if (arg.isBlank()) throw new YapException("Usage: due <yyyy-MM-dd>");
+    LocalDate date = parseDate(arg);
+    reachCold(date, date, false);
+    showDated("Here are the tasks on " + date + ":", tasks.indicesBetween(date, date));
+  }
+
+  private void handleBetween(String arg) throws YapException {
+    String[] parts = arg.trim().split("\\s+");
+    if (parts.length != 2) throw new YapException("Usage: between <yyyy-MM-dd> <yyyy-MM-dd>");
+    LocalDate from = parseDate(parts[0]);
+    LocalDate to = parseDate(parts[1]);
+    if (to.isBefore(from)) throw new YapException("The end date must not be before the start date.");
+    reachCold(from, to, false);
+    showDated(
+        "Here are the tasks from " + from + " to " + to + ":", tasks.indicesBetween(from, to));
+  }
+
+  private void handleOverdue() throws YapException {
+    reachCold(null, LocalDate.now().minusDays(1), true);
+    showDated("Here are your overdue tasks:", tasks.indicesOverdue(LocalDate.now()));
+  }
+
+  private void showDated(String header, java.util.List<Integer> hits) {
+    if (hits.isEmpty()) {
+      out.message("No matching tasks found.");
+    } else {
+      out.message(header);
+      out.message(tasks.renderByIndices(hits));
+    }
+  }
+
+  private static LocalDate parseDate(String iso) throws YapException {
+    try {
+      return LocalDate.parse(iso.trim());
+    } catch (DateTimeParseException ex) {
+      throw new YapException("Dates use yyyy-MM-dd (e.g., 2019-12-02): " + iso.trim());
+    }
+  }
+
+  private void handleDelete(String arg) throws YapException {
+    if (arg.isBlank()) throw new YapException("Delete needs a number or exact task name.");
+    int[] many = selectMany(arg);
+    if (many != null) {
+      deleteMany(many);
+      return;
+    }
+    int index = locate(arg);
+    journalRemove(index);
+    Task removed = tasks.remove(index);
+    remember(UndoHistory.Step.removed(currentLabel(), new int[] {index}, List.of(removed)));
+    out.changed(removed);
+    out.message("Removed: " + removed);
+  }
+
+  private void handleComplete(String arg) throws YapException {
+    if (arg.isBlank()) throw new YapException("Complete needs a number or exact task name.");
+    int[] many = selectMany(arg);
+    if (many != null) {
+      completeMany(many);
+      return;
+    }
+    int index = locate(arg);
+    Task before = tasks.get(index);
+    Task t = before.copy();
+    t.markDone();
+    journalUpdate(index, t);
+    tasks.set(index, t);
+    remember(UndoHistory.Step.replaced(
+        currentLabel(), new int[] {index}, List.of(before), List.of(t.copy())));
+    out.changed(t);
+    out.message("Marked as done: " + t);
+  }
+
+  /**
+   * Resolves a single delete/complete/edit target, a 1-based number or an exact name. Cold shards
+   * are read first if the target is not among the loaded tasks.
+   *
+   * @return the 1-based index
+   */
+  private int locate(String target) throws YapException {
+    if (isInteger(target)) {
+      int index = Integer.parseInt(target.trim());
+      if (index < 1 || index > tasks.size()) throw new YapException("Invalid index.");
+      BitSet one = new BitSet();
+      one.set(index);
+      reachColdAt(one);
+      if (tasks.get(index) instanceof ColdTask) {
+        throw new YapException("Task " + index + " could not be read from its cold shard.");
+      }
+      return index;
+    }
+    int index = tasks.indexOfName(target);
+    if (index < 0) {
+      reachCold(null, null, false);
+      index = tasks.indexOfName(target);
+    }
+    if (index < 0) throw new YapException("Task not found: " + target);
+    return index;
+  }
+
+  /**
+   * Resolves the bulk forms of a delete/complete target: ranges and lists such as {@code 10-500}
+   * or {@code 1,4,9} (which can be mixed), {@code find:<keyword>}, and {@code done}.
+   *
+   * @return sorted 1-based indices, or null if {@code arg} names a single task
+   */
+  private int[] selectMany(String arg) throws YapException {
+    String s = arg.trim();
+    if (s.regionMatches(true, 0, "find:", 0, 5)) {
+      String keyword = s.substring(5).trim();
+      if (keyword.isEmpty()) throw new YapException("Usage: find:<keyword>");
+      reachCold(null, null, false);
+      return tasks.findIndices(keyword).stream().mapToInt(Integer::intValue).toArray();
+    }
+    if (s.equalsIgnoreCase("done")) {
+      reachCold(null, null, false);
+      BitSet done = new BitSet();
+      for (int i = 1; i <= tasks.size(); i++) {
+        if (tasks.get(i).isDone()) {
+          done.set(i);
+        }
+      }
+      return done.stream().toArray();
+    }
+    if (!s.matches("[0-9,\\s-]+") || (s.indexOf(',') < 0 && s.indexOf('-') < 0)) {
+      return null;
+    }
+    BitSet selected = new BitSet();
+    for (String part : s.split(",")) {
+      int dash = part.indexOf('-');
+      int lo = parseIndex(dash < 0 ? part : part.substring(0, dash));
+      int hi = dash < 0 ? lo : parseIndex(part.substring(dash + 1));
+      if (lo > hi) throw new YapException("Invalid range: " + part.trim());
+      selected.set(lo, hi + 1);
+    }
+    reachColdAt(selected);
+    return selected.stream().toArray();
+  }
+
+  private int parseIndex(String s) throws YapException {
+    if (!isInteger(s)) throw new YapException("Invalid index: " + s.trim());
+    int index = Integer.parseInt(s.trim());
+    if (index < 1 || index > tasks.size()) throw new YapException("Invalid index: " + index);
+    return index;
+  }
+
+  /** Removes all selected tasks with one compaction of the list and one journal record. */
+  private void deleteMany(int[] indices) throws YapException {
+    if (indices.length == 0) {
+      out.message("No matching tasks found.");
+      return;
+    }
+    if (isJournaling) {
+      storage.appendRemoveAll(indices);
+    }
+    java.util.List<Task> removed = tasks.removeAll(indices);
+    remember(UndoHistory.Step.removed(currentLabel(), indices, removed));
+    removed.forEach(out::changed);
+    out.message(describeMany("Removed " + removed.size() + " tasks:", removed));
+  }
+
+  /** Marks all selected tasks done and journals them in one write; finished ones are skipped. */
+  private void completeMany(int[] indices) throws YapException {
+    int[] marked = new int[indices.length];
+    List<Task> changed = new ArrayList<>();
+    List<Task> before = new ArrayList<>();
+    List<Task> after = new ArrayList<>();
+    for (int index : indices) {
+      Task old = tasks.get(index);
+      if (!old.isDone()) {
+        Task t = old.copy();
+        before.add(old);
+        t.markDone();
+        after.add(t.copy());
+        marked[changed.size()] = index;
+        changed.add(t);
+      }
+    }
+    if (changed.isEmpty()) {
+      out.message("No tasks left to mark as done.");
+      return;
+    }
+    marked = java.util.Arrays.copyOf(marked, changed.size());
+    if (isJournaling) {
+      storage.appendUpdates(marked, changed);
+    }
+    for (int i = 0; i < marked.length; i++) {
+      tasks.set(marked[i], changed.get(i));
+    }
+    remember(UndoHistory.Step.replaced(currentLabel(), marked, before, after));
+    changed.forEach(out::changed);
+    out.message(describeMany("Marked " + changed.size() + " tasks as done:", changed));
+  }
+
+  /** A header followed by the first few tasks, so huge bulk operations stay readable. */
+  private static String describeMany(String header, java.util.List<Task> affected) {
+    final int shown = 10;
+    StringBuilder sb = new StringBuilder(header);
+    for (int i = 0; i < Math.min(shown, affected.size()); i++) {
+      sb.append(System.lineSeparator()).append("  ").append(affected.get(i));
+    }
+    if (affected.size() > shown) {
+      sb.append(System.lineSeparator()).append("  ...and ").append(affected.size() - shown)
+          .append(" more");
+    }
+    return sb.toString();
+  }
+
+  private static boolean isInteger(String s) {
+    try {
+      Integer.parseInt(s.trim());
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private void handleEdit(String rest) throws YapException {
+    if (rest == null || rest.trim().isEmpty()) {
+      throw new YapException("Usage: edit <index|exact name> [n/NAME] [d/YYYY-MM-DD] [t/HHmm-HHmm]");
+    }
+
+    String s = rest.trim();
+    int sp = s.indexOf(' ');
+    if (sp < 0) throw new YapException("No fields to change. Provide n/, d/, or t/.");
+
+    String target = s.substring(0, sp).trim();
+    String opts   = s.substring(sp + 1).trim();
+
+    // locate task by index or exact name
+    int idx0 = locate(target) - 1;
+
+    Task before = tasks.get(idx0 + 1);
+    Task original = before.copy(); // edited here, and put in the list once journaled
+    EditArgs args = parseEditArgs(opts); // your existing n/, d/, t/HHmm-HHmm parser
+
+    // mutate in place with type rules
+    if (original instanceof ToDos) {
+      if (args.date != null || args.timeStart != null || args.timeEnd != null) {
+        throw new YapException("Todo can only change name (use n/).");
+      }
+      String newName = coalesce(args.name, original.getName());
+      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
+      original.setName(newName); // from Task.java
+
+    } else if (original instanceof Deadlines) {
+      if (args.timeStart != null || args.timeEnd != null) {
+        throw new YapException("Deadline can change name and date only (n/, d/).");
+      }
+      Deadlines dl = (Deadlines) original;
+      String newName = coalesce(args.name, dl.getName());
+      String isoDate = coalesce(args.date, dl.getBy().toString());
+      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
+      LocalDate by = LocalDate.parse(isoDate); // before any change, so a bad date changes nothing
+      dl.setName(newName);
+      dl.setBy(by);
+
+    } else if (original instanceof Events) {
+      Events ev = (Events) original;
+      String newName = coalesce(args.name, ev.getName());
+      String isoDate = coalesce(args.date, ev.getDate().toString());
+      String startHHmm = (args.timeStart != null)
+              ? args.timeStart
+              : ev.getStart().format(java.time.format.DateTimeFormatter.ofPattern("HHmm"));
+      String endHHmm = (args.timeEnd != null)
+              ? args.timeEnd
+              : ev.getEnd().format(java.time.format.DateTimeFormatter.ofPattern("HHmm"));
+      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
+      if (startHHmm.compareTo(endHHmm) >= 0) throw new YapException("Start must be before end.");
+      // Parse everything before the first change, so a bad value leaves the event as it was.
+      LocalDate.parse(isoDate);
+      java.time.LocalTime.parse(startHHmm, java.time.format.DateTimeFormatter.ofPattern("HHmm"));
+      java.time.LocalTime.parse(endHHmm, java.time.format.DateTimeFormatter.ofPattern("HHmm"));
+      ev.setName(newName);
+      ev.setDate(isoDate);
+      ev.setStart(startHHmm);
+      ev.setEnd(endHHmm);
+
+    } else {
+      throw new YapException("Unsupported task type for edit.");
+    }
+
+    journalUpdate(idx0 + 1, original);
+    tasks.set(idx0 + 1, original);
+    remember(UndoHistory.Step.replaced(
+        currentLabel(), new int[] {idx0 + 1}, List.of(before), List.of(original.copy())));
+    out.changed(original);
+
+    out.message("Edited: " + original.toString());
+    if (original instanceof Events) {
+      warnIfOverlapping((Events) original);
+    }
+  }
+
+  /**
+   * Undoes the last recorded change by applying its inverse, or with {@code isRedo} makes the last
+   * undone change again. The result is journaled like the original command, before the list
+   * changes; the step moves between the undo and redo stacks only once both are done.
+   */
+  private void handleUndo(boolean isRedo) throws YapException {
+    UndoHistory.Step step = isRedo ? history.redo(tasks.version()) : history.undo(tasks.version());
+    List<Task> affected;
+    switch (isRedo ? step.change : step.change.inverse()) {
+      case INSERT:
+        affected = new ArrayList<>(step.tasks); // one set of objects, also for a columnar step
+        if (isJournaling) {
+          storage.appendInserts(step.indices, affected);
+        }
+        tasks.insertAll(step.indices, affected);
+        break;
+      case REMOVE:
+        if (isJournaling) {
+          storage.appendRemoveAll(step.indices);
+        }
+        // Keep what actually left: a later undo of an edit may have swapped in another object.
+        affected = tasks.removeAll(step.indices);
+        step.tasks = UndoHistory.atRest(affected);
+        break;
+      case REPLACE:
+      default:
+        List<Task> states = isRedo ? step.after : step.before;
+        affected = new ArrayList<>(states.size());
+        for (Task state : states) {
+          affected.add(state.copy()); // the stored state must not see later edits
+        }
+        if (isJournaling) {
+          storage.appendUpdates(step.indices, affected);
+        }
+        for (int i = 0; i < affected.size(); i++) {
+          tasks.set(step.indices[i], affected.get(i));
+        }
+        break;
+    }
+    if (isRedo) {
+      history.redone(tasks.version());
+    } else {
+      history.undone(tasks.version());
+    }
+    affected.forEach(out::changed);
+    out.message(describeMany((isRedo ? "Redone: " : "Undone: ") + step.label, affected));
+  }
+
+  private void handleArchive(String args) throws YapException {
+    String s = args.trim();
+    if (!s.regionMatches(true, 0, "find ", 0, 5) || s.substring(5).isBlank()) {
+      throw new YapException("Usage: archive find <keyword>");
+    }
+    List<Archive.Entry> hits = storage.findArchived(s.substring(5).trim());
+    if (hits.isEmpty()) {
+      out.message("No matching archived tasks found.");
+      return;
+    }
+    StringBuilder sb = new StringBuilder("Here are the matching archived tasks (restore <n>):");
+    for (Archive.Entry e : hits) {
+      sb.append(System.lineSeparator()).append(e.number()).append('.').append(e.task());
+    }
+    out.message(sb.toString());
+  }
+
+  /**
+   * Moves archived tasks back to the end of the list. They stay done, but their done day becomes
+   * today so the next load does not archive them straight away. Like loading a cold shard, this
+   * leaves the undo history usable; it is not itself undone.
+   */
+  private void handleRestore(String args) throws YapException {
+    if (args.isBlank()) throw new YapException("Usage: restore <number>, e.g. restore 12 or 3,7-9");
+    int[] numbers = parseNumbers(args);
+    List<Archive.Entry> found = storage.readArchived(numbers);
+    if (found.size() != numbers.length) {
+      BitSet missing = new BitSet();
+      for (int n : numbers) {
+        missing.set(n);
+      }
+      found.forEach(e -> missing.clear(e.number()));
+      throw new YapException("Not in the archive: " + missing.nextSetBit(0));
+    }
+    List<Task> back = new ArrayList<>(found.size());
+    int[] indices = new int[found.size()];
+    for (int i = 0; i < indices.length; i++) {
+      Task t = found.get(i).task();
+      t.setDoneOn(LocalDate.now());
+      back.add(t);
+      indices[i] = tasks.size() + i + 1;
+    }
+    long before = tasks.version();
+    tasks.insertAll(indices, back);
+    // Stored in the list before leaving the archive: a crash in between duplicates, never loses.
+    if (isJournaling) {
+      storage.appendInserts(indices, back);
+      storage.flush();
+    } else {
+      save();
+    }
+    storage.markRestored(numbers);
+    history.indicesKept(before, tasks.version());
+    back.forEach(out::changed);
+    out.message(back.size() == 1
+        ? "Restored: " + back.get(0)
+        : describeMany("Restored " + back.size() + " tasks:", back));
+  }
+
+  /** Parses a number, list or range such as {@code 12}, {@code 3,7,9} or {@code 7-9}. */
+  private static int[] parseNumbers(String s) throws YapException {
+    if (!s.matches("[0-9,\\s-]+")) throw new YapException("Expected numbers like 3,7-9: " + s);
+    BitSet selected = new BitSet();
+    for (String part : s.split(",")) {
+      int dash = part.indexOf('-');
+      long lo = parsePositive((dash < 0 ? part : part.substring(0, dash)).trim());
+      long hi = dash < 0 ? lo : parsePositive(part.substring(dash + 1).trim());
+      if (lo > hi) throw new YapException("Invalid range: " + part.trim());
+      selected.set((int) lo, (int) hi + 1);
+    }
+    return selected.stream().toArray();
+  }
+
+  private void warnIfOverlapping(Events e) throws YapException {
+    reachCold(e.getDate(), e.getDate(), false);
+    java.util.List<Integer> clashes = tasks.indicesOverlapping(e);
+    if (clashes.isEmpty()) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder("Heads up, this overlaps with:");
+    for (int idx : clashes) {
+      sb.append(System.lineSeparator()).append("  ").append(idx).append(". ").append(tasks.get(idx));
+    }
+    out.message(sb.toString());
+  }
+
+  private void handleConflicts() throws YapException {
+    reachCold(null, null, false);
+    java.util.List<int[]> pairs = tasks.conflictingPairs();
+    if (pairs.isEmpty()) {
+      out.message("No overlapping events.");
+      return;
+    }
+    StringBuilder sb = new StringBuilder("These events overlap:");
+    for (int[] pair : pairs) {
+      sb.append(System.lineSeparator()).append(pair[0]).append(". ").append(tasks.get(pair[0]));
+      sb.append(System.lineSeparator()).append("   with ").append(pair[1]).append(". ");
+      sb.append(tasks.get(pair[1]));
+    }
+    out.message(sb.toString());
+  }
+
+
+  // Small holder for parsed args
+  private static final class EditArgs {
+    String name;        // from n/
+    String date;        // ISO yyyy-MM-dd from d/
+    String timeStart;   // HHmm from t/ start
+    String timeEnd;     // HHmm from t/ end
+  }
+
+  // Mini parser for n/, d/, t/HHmm-HHmm (values may contain spaces for n/)
+  private static EditArgs parseEditArgs(String s) throws YapException {
+    EditArgs a = new EditArgs();
+    if (s == null || s.isBlank()) return a;
+
+    // Find prefix positions
+    int nPos = indexOfWordPref(s, "n/");
+    int dPos = indexOfWordPref(s, "d/");
+    int tPos = indexOfWordPref(s, "t/");
+
+    // Extract substring for each prefix up to the next prefix
+    a.name = sliceVal(s, nPos, dPos, tPos);
+    a.date = sliceVal(s, dPos, nPos, tPos);
+
+    String tVal = sliceVal(s, tPos, nPos, dPos);
+    if (tVal != null && !tVal.isBlank()) {
+      String v = tVal.trim();
+      // accept "HHmm-HHmm" or a single "HHmm" (will be treated as both start & end invalid; better to require dash)
+      String[] parts = v.split("-");
+      if (parts.length != 2) throw new YapException("Time uses t/HHmm-HHmm (e.g., t/0900-1030).");
+      a.timeStart = parts[0].trim();
+      a.timeEnd   = parts[1].trim();
+      if (!a.timeStart.matches("\\d{4}") || !a.timeEnd.matches("\\d{4}")) {
+        throw new YapException("Time must be 4 digits (HHmm).");
+      }
+    }
+
+    return a;
+  }
+
+  // helpers for prefix parsing
+  private static int indexOfWordPref(String s, String pref) {
+    // match at start or after space
+    int i = s.indexOf(" " + pref);
+    int j = (s.startsWith(pref) ? 0 : -1);
+    if (j == 0) return 0;
+    return i < 0 ? -1 : i + 1;
+  }
+
+  private static String sliceVal(String s, int selfPos, int other1Pos, int other2Pos) {
+    if (selfPos < 0) return null;
+    int end = s.length();
+    if (other1Pos >= 0 && other1Pos > selfPos) end = Math.min(end, other1Pos);
+    if (other2Pos >= 0 && other2Pos > selfPos) end = Math.min(end, other2Pos);
+    String raw = s.substring(selfPos + 2, end).trim(); // skip "x/"
+    return raw.isEmpty() ? null : raw;
+  }
+
+  private static <T> T coalesce(T a, T b) { return (a != null) ? a : b; }
+}
@@ -0,0 +1,33 @@
+package yap.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one command run by {@link CommandEngine}, from either front end. Save
+ * and journal events for the same command are nested inside it on the same thread.
+ */
+@Name("yap.Command")
+@Label("Run Command")
+@Category({"Yap", "Commands"})
+@Description("One command handled by the engine, including any journaling or save it caused")
+@StackTrace(false)
+final class CommandEvent extends jdk.jfr.Event {
+
+  @Label("Command")
+  String command;
+
+  @Label("Failed")
+  @Description("Whether the command reported an error")
+  boolean failed;
+
+  @Label("Changed Tasks")
+  int changedTasks;
+
+  @Label("Task Count")
+  @Description("Size of the list after the command")
+  int taskCount;
+}
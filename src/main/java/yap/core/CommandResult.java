@@ -0,0 +1,153 @@
+package yap.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import yap.io.Ui;
+import yap.task.Task;
+import yap.task.TaskList;
+
+/**
+ * Outcome of one command run through {@link CommandEngine}.
+ *
+ * <p>Holds the lines to show, in the order they were produced, each marked as a plain message or
+ * an error; the tasks the command added, removed or changed; and whether the user asked to quit.
+ * Front ends decide how to present it: the CLI prints entries through {@link Ui}, the GUI
+ * uses {@link #render()}.
+ *
+ * <p>A listing of tasks is kept as a range rather than text, so a front end can stream it or show
+ * it a page at a time. Its text is built from the live list, so read it before running the next
+ * command.
+ */
+public final class CommandResult {
+
+  /** One line (or block of lines) of output, or a range of the task list to show. */
+  public static final class Entry {
+    private final String text;
+    private final boolean isError;
+    private final TaskList listed; // non-null for a listing
+    private final int from;
+    private final int count;
+
+    private Entry(String text, boolean isError, TaskList listed, int from, int count) {
+      this.text = text;
+      this.isError = isError;
+      this.listed = listed;
+      this.from = from;
+      this.count = count;
+    }
+
+    /** Returns the text of this entry; a listing is rendered on each call. */
+    public String text() {
+      return listed == null ? text : listed.render(from, count);
+    }
+
+    public boolean isError() {
+      return isError;
+    }
+
+    /** Returns whether this entry is a range of tasks rather than fixed text. */
+    public boolean isListing() {
+      return listed != null;
+    }
+
+    /** Returns the 1-based index of the first listed task. */
+    public int from() {
+      return from;
+    }
+
+    /** Returns the number of listed tasks. */
+    public int count() {
+      return count;
+    }
+  }
+
+  private final List<Entry> entries = new ArrayList<>(2);
+  private final List<Task> changedTasks = new ArrayList<>(1);
+  private boolean isExit = false;
+
+  CommandResult() {
+  }
+
+  void message(String text) {
+    entries.add(new Entry(text, false, null, 0, 0));
+  }
+
+  void error(String text) {
+    entries.add(new Entry(text, true, null, 0, 0));
+  }
+
+  void listing(TaskList tasks, int from, int count) {
+    entries.add(new Entry(null, false, tasks, from, count));
+  }
+
+  void changed(Task t) {
+    changedTasks.add(t);
+  }
+
+  void exit() {
+    isExit = true;
+  }
+
+  /** Returns every message and error in the order they were produced. */
+  public List<Entry> entries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /** Returns the text of the non-error entries, in order. */
+  public List<String> messages() {
+    return texts(false);
+  }
+
+  /** Returns the text of the error entries, in order, without the error prefix. */
+  public List<String> errors() {
+    return texts(true);
+  }
+
+  /** Returns the tasks added, removed or edited by the command, in the order they were touched. */
+  public List<Task> changedTasks() {
+    return Collections.unmodifiableList(changedTasks);
+  }
+
+  public boolean hasErrors() {
+    for (Entry e : entries) {
+      if (e.isError) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether the user asked to quit. */
+  public boolean isExit() {
+    return isExit;
+  }
+
+  /**
+   * Returns the output as the CLI would print it: one entry per line, errors prefixed with
+   * {@link Ui#ERROR_PREFIX}.
+   *
+   * @return rendered text; empty if the command produced no output
+   */
+  public String render() {
+    StringBuilder sb = new StringBuilder();
+    for (Entry e : entries) {
+      if (e.isError) {
+        sb.append(Ui.ERROR_PREFIX);
+      }
+      sb.append(e.text()).append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+
+  private List<String> texts(boolean wantErrors) {
+    List<String> out = new ArrayList<>(entries.size());
+    for (Entry e : entries) {
+      if (e.isError == wantErrors) {
+        out.add(e.text());
+      }
+    }
+    return out;
+  }
+}
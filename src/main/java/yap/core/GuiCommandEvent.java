@@ -0,0 +1,32 @@
+package yap.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one line handled by {@link GuiYapAdapter}: the command plus building
+ * the reply bubble. The {@link CommandEvent} for the same line is nested inside it.
+ */
+@Name("yap.GuiCommand")
+@Label("GUI Command")
+@Category({"Yap", "GUI"})
+@Description("One line from the chat window, from leaving the queue to the reply text")
+@StackTrace(false)
+final class GuiCommandEvent extends jdk.jfr.Event {
+
+  @Label("Queue Time")
+  @Description("Time spent waiting behind earlier commands; 0 for direct calls")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueTime;
+
+  @Label("Reply Length")
+  int replyLength;
+
+  @Label("Paged")
+  @Description("Whether a listing was cut to its first page")
+  boolean paged;
+}
@@ -1,42 +1,73 @@
 package yap.core;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import yap.io.Ui;
-import yap.parser.Parser;
 import yap.task.TaskList;
 
 /**
- * Bridges the existing CLI engine in {@link Yap} to the GUI without changing behaviour.
+ * Front end of {@link CommandEngine} for the GUI.
  *
- * <p>It reuses the same {@code Yap} instance and state. On each call, it temporarily captures
- * {@code System.out}, executes the exact same code paths (using reflection to invoke Yap's private
- * helpers when needed), and returns the text that the CLI would have printed. No command strings,
- * ordering, or formatting are reimplemented here, ensuring parity.
+ * <p>It wraps a {@link Yap} built on the same save file as the CLI and forwards each line to that
+ * app's engine, so both front ends share one implementation of every command. The reply is the
+ * engine's {@link CommandResult} rendered as the text the CLI would have printed.
+ *
+ * <p>Task listings longer than {@link #GUI_PAGE_SIZE} are cut to their first page; the reply says
+ * where the rest starts, and {@link #submitMore(Reply)} fetches it a page at a time as the user
+ * scrolls. Every page renders from a {@link TaskList.Snapshot} taken for the first one, so the
+ * numbers stay those of the list the user asked for, whatever commands ran in between.
+ *
+ * <p>{@link #submit(String)} runs commands on a single background thread so the JavaFX application
+ * thread never waits on rendering or disk I/O. One thread keeps commands in the order they were
+ * submitted; the engine itself is only ever touched from that thread. The list loads in the
+ * background from the moment the adapter is created, and the first command waits for it there,
+ * not on the caller's thread. Each line is recorded as a
+ * {@code yap.GuiCommand} Flight Recorder event, including how long it waited in that queue.
  */
 public final class GuiYapAdapter {
-    private final Yap yap;
+    /** Tasks per chat bubble when listing. */
+    public static final int GUI_PAGE_SIZE = 100;
+
+    /** Text of one reply bubble, plus where the listing in it continues, if it was cut short. */
+    public static final class Reply {
+        private final String text;
+        private final int moreFrom; // 1-based; 0 if nothing more
+        private final int moreUntil;
+        private final TaskList.Snapshot listed; // the list the pages come from; null if no more
+
+        private Reply(String text, int moreFrom, int moreUntil, TaskList.Snapshot listed) {
+            this.text = text;
+            this.moreFrom = moreFrom;
+            this.moreUntil = moreUntil;
+            this.listed = listed;
+        }
 
-    // Cached reflective handles for performance and clarity.
-    private final Field fUi;
-    private final Field fParser;
-    private final Field fStorage;
-    private final Field fTasks;
-    private final Field fInAddMode;
+        private Reply(String text) {
+            this(text, 0, 0, null);
+        }
 
-    private final Method mHelpText;
-    private final Method mHandleAddLine;
-    private final Method mHandleDelete;
-    private final Method mHandleComplete;
-    private final Method mHandleFind;
-    private final Method mHandleEdit;
+        public String text() {
+            return text;
+        }
 
+        /** Returns whether a listing in this reply has more tasks to load. */
+        public boolean hasMore() {
+            return moreFrom > 0;
+        }
+    }
 
-    private boolean nameSet = false;
-    private boolean exitRequested = false;
+    private final Yap yap;
+    private CommandEngine engine; // set on the engine thread by the first command
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "yap-engine");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile boolean nameSet = false;
+    private volatile boolean exitRequested = false;
 
     /**
      * Creates an adapter around a new {@link Yap} using the given file path (same as CLI).
@@ -45,33 +76,6 @@ public final class GuiYapAdapter {
      */
     public GuiYapAdapter(String filePath) {
         this.yap = new Yap(filePath);
-        try {
-            fUi = Yap.class.getDeclaredField("ui");
-            fParser = Yap.class.getDeclaredField("parser");
-            fStorage = Yap.class.getDeclaredField("storage");
-            fTasks = Yap.class.getDeclaredField("tasks");
-            fInAddMode = Yap.class.getDeclaredField("inAddMode");
-            fUi.setAccessible(true);
-            fParser.setAccessible(true);
-            fStorage.setAccessible(true);
-            fTasks.setAccessible(true);
-            fInAddMode.setAccessible(true);
-
-            mHelpText = Yap.class.getDeclaredMethod("helpText");
-            mHandleAddLine = Yap.class.getDeclaredMethod("handleAddLine", String.class);
-            mHandleDelete = Yap.class.getDeclaredMethod("handleDelete", String.class);
-            mHandleComplete = Yap.class.getDeclaredMethod("handleComplete", String.class);
-            mHandleFind = Yap.class.getDeclaredMethod("handleFind", String.class);
-            mHelpText.setAccessible(true);
-            mHandleAddLine.setAccessible(true);
-            mHandleDelete.setAccessible(true);
-            mHandleComplete.setAccessible(true);
-            mHandleFind.setAccessible(true);
-            mHandleEdit = Yap.class.getDeclaredMethod("handleEdit", String.class);
-            mHandleEdit.setAccessible(true);
-        } catch (ReflectiveOperationException e) {
-            throw new IllegalStateException("Reflection wiring failed: " + e.getMessage(), e);
-        }
     }
 
     /**
@@ -103,134 +107,113 @@ public final class GuiYapAdapter {
     }
 
     /**
-     * Handles one user input line by executing the exact same command flow and returning the
-     * CLI's output. Output is captured by temporarily redirecting {@code System.out}.
+     * Handles one user input line and returns the reply as the CLI would have printed it, except
+     * that a long listing stops after its first page. Runs on the engine thread like {@link
+     * #submit(String)}, but blocks the caller until the reply is ready.
      *
      * @param raw user input.
      * @return text exactly as the CLI would have printed.
      */
     public String handle(String raw) {
+        return submit(raw).join().text();
+    }
+
+    /**
+     * Queues one user input line on the engine thread and returns at once. Lines run one at a
+     * time in the order they were submitted.
+     *
+     * @param raw user input.
+     * @return the reply, once the command has run.
+     */
+    public CompletableFuture<Reply> submit(String raw) {
+        long queuedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> reply(raw, queuedAt), worker);
+    }
+
+    /**
+     * Queues loading the next page of a listing that was cut short.
+     *
+     * @param previous a reply whose {@link Reply#hasMore()} is true.
+     * @return the next page, which may itself have more.
+     */
+    public CompletableFuture<Reply> submitMore(Reply previous) {
+        assert previous.hasMore() : "Nothing more to load";
+        return CompletableFuture.supplyAsync(() -> nextPage(previous), worker);
+    }
+
+    private Reply reply(String raw, long queuedAt) {
+        long started = System.nanoTime();
+        GuiCommandEvent event = new GuiCommandEvent();
+        event.begin();
+        Reply reply = buildReply(raw);
+        if (event.shouldCommit()) {
+            event.queueTime = started - queuedAt;
+            event.replyLength = reply.text.length();
+            event.paged = reply.hasMore();
+            event.commit();
+        }
+        return reply;
+    }
+
+    private Reply buildReply(String raw) {
         if (!nameSet) {
             // If the GUI forgot to set the user's name first, emulate the CLI flow:
             // accept this line as the name and print the same post-name line.
-            return setUserName(raw == null ? "" : raw.trim());
+            return new Reply(setUserName(raw == null ? "" : raw.trim()));
         }
-
-        String s = raw == null ? "" : raw.trim();
-
-        // Capture System.out
-        PrintStream originalOut = System.out;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
-        try (PrintStream capture = new PrintStream(baos)) {
-            System.setOut(capture);
-
-            // We will now run the same switch(cmd.kind) the CLI uses, but
-            // we call Yap's private helpers (which print via Ui) through reflection.
-            Parser parser = (Parser) fParser.get(yap);
-            Parser.Parsed cmd = parser.parse(s);
-
-            Ui ui = (Ui) fUi.get(yap);
-            TaskList tasks = (TaskList) fTasks.get(yap);
-            Object storage = fStorage.get(yap); // used only when the CLI saves
-
-            switch (cmd.kind) {
-                case HELP: {
-                    String help = (String) mHelpText.invoke(yap);
-                    ui.showMessage(help);
-                    break;
-                }
-                case SHOW: {
-                    if (tasks.size() == 0) {
-                        ui.showMessage("No tasks yet.");
-                    } else {
-                        ui.showMessage(tasks.render());
-                    }
-                    break;
-                }
-                case ADD: {
-                    boolean inAddMode = fInAddMode.getBoolean(yap);
-                    if (!inAddMode && !"done".equalsIgnoreCase(cmd.rest)) {
-                        fInAddMode.setBoolean(yap, true);
-                        ui.showMessage("Entered Add mode. Use:\n"
-                                + "  t <name>\n"
-                                + "  d <name>/<yyyy-MM-dd>\n"
-                                + "  e <name>/<yyyy-MM-dd>/<HHmm>/<HHmm>\n"
-                                + "Type 'done' to exit Add mode.");
-                    } else if (inAddMode) {
-                        if ("done".equalsIgnoreCase(cmd.rest)) {
-                            fInAddMode.setBoolean(yap, false);
-                            ui.showMessage("Exited Add mode.");
-                            // CLI saves after exiting add-mode only when additions occurred;
-                            // additions save inside handleAddLine itself.
-                        } else {
-                            // Delegate to the same helper
-                            mHandleAddLine.invoke(yap, cmd.rest);
-                            // After a successful add-line, the CLI doesn't always save immediately here,
-                            // because handleAddLine adds and prints. It saves in the CLI after batches
-                            // for some flows; your CLI also calls save after DELETE/COMPLETE cases.
-                            // Here, we follow the CLI's exact behaviour: handleAddLine itself
-                            // does not call save; the CLI later calls save at specific points.
-                        }
-                    } else {
-                        ui.showError("Say 'add' first to enter Add mode.");
-                    }
-                    break;
-                }
-                case DELETE: {
-                    mHandleDelete.invoke(yap, cmd.rest);
-                    // storage.save(tasks.all());
-                    // Call exactly as the CLI would: we cannot access save via helper,
-                    // but DELETE case in CLI calls save immediately after handleDelete.
-                    yap.io.Storage.class
-                            .getMethod("save", java.util.List.class)
-                            .invoke(storage, tasks.all());
-                    break;
-                }
-                case COMPLETE: {
-                    mHandleComplete.invoke(yap, cmd.rest);
-                    yap.io.Storage.class
-                            .getMethod("save", java.util.List.class)
-                            .invoke(storage, tasks.all());
-                    break;
-                }
-                case EXIT: {
-                    exitRequested = true;
-                    break;
-                }
-                case FIND: {
-                    mHandleFind.invoke(yap, cmd.rest);
-                    break;
-                }
-
-                case EDIT: {
-                    // call the same helper your CLI uses
-                    mHandleEdit.invoke(yap, cmd.rest);
-
-                    // then persist, exactly like CLI does after EDIT
-                    yap.io.Storage.class
-                            .getMethod("save", java.util.List.class)
-                            .invoke(storage, tasks.all());
-                    break;
-                }
-
-                case UNKNOWN:
-                default: {
-                    boolean inAddMode = fInAddMode.getBoolean(yap);
-                    if (inAddMode) {
-                        mHandleAddLine.invoke(yap, cmd.rest);
-                    } else {
-                        ui.showError("I don't understand. Type 'help' to see the list of commands.");
-                    }
-                    break;
-                }
+        StringBuilder sb = new StringBuilder();
+        int moreFrom = 0;
+        int moreUntil = 0;
+        TaskList.Snapshot listed = null;
+        for (CommandResult.Entry e : handleResult(raw).entries()) {
+            if (e.isError()) {
+                sb.append(Ui.ERROR_PREFIX).append(e.text());
+            } else if (e.isListing() && e.count() > GUI_PAGE_SIZE) {
+                listed = engine().tasks().snapshot();
+                sb.append(listed.render(e.from(), GUI_PAGE_SIZE));
+                moreFrom = e.from() + GUI_PAGE_SIZE;
+                moreUntil = e.from() + e.count() - 1;
+            } else {
+                sb.append(e.text());
             }
-        } catch (Exception e) {
-            // Print exactly like the CLI generic error path
-            System.out.print("☹ OOPS! " + e.getMessage() + System.lineSeparator());
-        } finally {
-            System.setOut(originalOut);
+            sb.append(System.lineSeparator());
+        }
+        return new Reply(sb.toString(), moreFrom, moreUntil, listed);
+    }
+
+    private Reply nextPage(Reply previous) {
+        int until = previous.moreUntil;
+        int count = Math.min(GUI_PAGE_SIZE, until - previous.moreFrom + 1);
+        String text = previous.listed.render(previous.moreFrom, count);
+        int next = previous.moreFrom + count;
+        return next <= until ? new Reply(text, next, until, previous.listed) : new Reply(text);
+    }
+
+    /** Runs one user input line on the engine thread and notes whether it asked to exit. */
+    private CommandResult handleResult(String raw) {
+        CommandResult result = engine().execute(raw);
+        if (result.isExit()) {
+            exitRequested = true;
+        }
+        return result;
+    }
+
+    /** Returns the engine, waiting for the list to load the first time; engine thread only. */
+    private CommandEngine engine() {
+        if (engine == null) {
+            engine = yap.getEngine();
         }
-        return baos.toString();
+        return engine;
+    }
+
+    /**
+     * Waits for queued commands and any background saves to finish; call before the window closes.
+     *
+     * @throws YapException if a pending save could not be written.
+     */
+    public void flush() throws YapException {
+        CompletableFuture.runAsync(() -> { }, worker).join();
+        yap.flush();
     }
 
     /**
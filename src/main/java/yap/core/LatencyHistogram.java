@@ -0,0 +1,90 @@
+package yap.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds, in the style of HdrHistogram.
+ *
+ * <p>Values below {@code 2^SUB_BITS} get one bucket each; above that, every power of two is split
+ * into {@code 2^(SUB_BITS-1)} equal buckets, so a reported percentile is within about 3% of the
+ * true value. Recording is a bucket lookup and an atomic increment, with no allocation. Values
+ * above {@link #MAX_TRACKED} (about 68 s) share the last bucket; the exact maximum is kept
+ * separately.
+ */
+public final class LatencyHistogram {
+
+  /** Largest value with a bucket of its own; anything larger is counted in the last bucket. */
+  public static final long MAX_TRACKED = (1L << 36) - 1;
+
+  private static final int SUB_BITS = 6;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int HALF = SUB_COUNT / 2;
+
+  private final AtomicLongArray counts = new AtomicLongArray(index(MAX_TRACKED) + 1);
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /** Records one duration; negative values count as 0. */
+  public void record(long nanos) {
+    long v = Math.max(0, nanos);
+    counts.incrementAndGet(index(Math.min(v, MAX_TRACKED)));
+    total.incrementAndGet();
+    long seen;
+    while (v > (seen = max.get()) && !max.compareAndSet(seen, v)) {
+      // another thread raised the maximum first; retry against its value
+    }
+  }
+
+  /** Returns the number of recorded values. */
+  public long count() {
+    return total.get();
+  }
+
+  /** Returns the largest recorded value, or 0 if nothing was recorded. */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns the value at the given percentile: the upper bound of the bucket holding it, capped at
+   * {@link #max()}.
+   *
+   * @param percentile between 0 and 100
+   * @return the value, or 0 if nothing was recorded
+   */
+  public long percentile(double percentile) {
+    assert percentile >= 0 && percentile <= 100 : "Percentile must be between 0 and 100";
+    long n = total.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestIn(i), max());
+      }
+    }
+    return max();
+  }
+
+  static int index(long v) {
+    if (v < SUB_COUNT) {
+      return (int) v;
+    }
+    // Shift so that v >>> shift lands in [HALF, SUB_COUNT): the top SUB_BITS bits of v.
+    int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+    return shift * HALF + (int) (v >>> shift);
+  }
+
+  static long highestIn(int index) {
+    if (index < SUB_COUNT) {
+      return index;
+    }
+    int shift = index / HALF - 1;
+    long sub = index - (long) shift * HALF;
+    return ((sub + 1) << shift) - 1;
+  }
+}
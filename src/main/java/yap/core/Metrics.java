@@ -0,0 +1,230 @@
+package yap.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import yap.parser.Parser;
+
+/**
+ * Latency and size figures for one session, shown by the {@code stats} command.
+ *
+ * <p>Responsibilities: a {@link LatencyHistogram} per command kind, filled by {@link
+ * CommandEngine} around each command; histograms and byte counts for snapshot saves, journal
+ * appends and loads, filled by {@link yap.io.Storage}; and the size of the task list each time it
+ * changes. Recording never allocates except for a task-count sample, and only when the count
+ * changed.
+ *
+ * <p>Safe to record from several threads, though in practice the engine's thread does all of it.
+ */
+public final class Metrics {
+
+  /** System property naming a file to write the figures to on exit; see {@link #dumpFile()}. */
+  public static final String FILE_PROPERTY = "yap.metricsFile";
+
+  /** Task-count samples kept; once full, the oldest is overwritten. */
+  static final int SIZE_SAMPLES = 1024;
+
+  private final long startNanos = System.nanoTime();
+  private final long startMillis = System.currentTimeMillis();
+  private final Map<Parser.Kind, LatencyHistogram> commands = new EnumMap<>(Parser.Kind.class);
+  private final LatencyHistogram saves = new LatencyHistogram();
+  private final LatencyHistogram appends = new LatencyHistogram();
+  private final LatencyHistogram loads = new LatencyHistogram();
+  private final AtomicLong savedBytes = new AtomicLong();
+  private final AtomicLong appendedBytes = new AtomicLong();
+
+  // Task-count samples as a ring buffer, guarded by this.
+  private final long[] sampleMillis = new long[SIZE_SAMPLES];
+  private final int[] sampleCounts = new int[SIZE_SAMPLES];
+  private int samples = 0;
+  private int lastCount = -1;
+  private int peakCount = 0;
+
+  public Metrics() {
+    for (Parser.Kind kind : Parser.Kind.values()) {
+      commands.put(kind, new LatencyHistogram());
+    }
+  }
+
+  /** Returns the file named by {@link #FILE_PROPERTY}, or null if it is not set. */
+  public static Path dumpFile() {
+    String name = System.getProperty(FILE_PROPERTY);
+    return name == null || name.isBlank() ? null : Path.of(name);
+  }
+
+  /** Records how long one command of the given kind took. */
+  public void recordCommand(Parser.Kind kind, long nanos) {
+    commands.get(kind).record(nanos);
+  }
+
+  /** Records a snapshot save: time spent by the caller and size of the snapshot. */
+  public void recordSave(long nanos, long bytes) {
+    saves.record(nanos);
+    savedBytes.addAndGet(bytes);
+  }
+
+  /** Records one journal append: time spent by the caller and bytes appended. */
+  public void recordAppend(long nanos, long bytes) {
+    appends.record(nanos);
+    appendedBytes.addAndGet(bytes);
+  }
+
+  /** Records how long loading the save file (snapshot plus journal) took. */
+  public void recordLoad(long nanos) {
+    loads.record(nanos);
+  }
+
+  /** Notes the current size of the task list; a sample is kept only when it changed. */
+  public synchronized void recordTaskCount(int count) {
+    if (count == lastCount) {
+      return;
+    }
+    lastCount = count;
+    peakCount = Math.max(peakCount, count);
+    int slot = samples++ % SIZE_SAMPLES;
+    sampleMillis[slot] = System.currentTimeMillis();
+    sampleCounts[slot] = count;
+  }
+
+  /** Returns the histogram for one command kind. */
+  public LatencyHistogram command(Parser.Kind kind) {
+    return commands.get(kind);
+  }
+
+  public LatencyHistogram saves() {
+    return saves;
+  }
+
+  public LatencyHistogram appends() {
+    return appends;
+  }
+
+  public LatencyHistogram loads() {
+    return loads;
+  }
+
+  /**
+   * Returns the figures as a table: count, p50, p99 and max for each command run so far and for
+   * storage, then the current and peak size of the list.
+   */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-10s %7s %10s %10s %10s", "Command", "count", "p50", "p99", "max"));
+    boolean isEmpty = true;
+    for (Map.Entry<Parser.Kind, LatencyHistogram> e : commands.entrySet()) {
+      if (e.getValue().count() > 0) {
+        appendRow(sb, e.getKey().name().toLowerCase(), e.getValue(), -1);
+        isEmpty = false;
+      }
+    }
+    if (isEmpty) {
+      sb.append("\n  (no commands yet)");
+    }
+    sb.append("\nStorage");
+    appendRow(sb, "save", saves, savedBytes.get());
+    appendRow(sb, "journal", appends, appendedBytes.get());
+    appendRow(sb, "load", loads, -1);
+    synchronized (this) {
+      sb.append(String.format("\nTasks: %d now, %d peak, over %s",
+          Math.max(lastCount, 0), peakCount, formatUptime(System.nanoTime() - startNanos)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes every figure to {@code file} as JSON: durations in nanoseconds and the task-count
+   * samples as {@code [epochMillis, count]} pairs, oldest first.
+   *
+   * @throws YapException if the file cannot be written
+   */
+  public void writeTo(Path file) throws YapException {
+    StringBuilder sb = new StringBuilder(4096);
+    sb.append("{\n  \"startedAt\": ").append(startMillis);
+    sb.append(",\n  \"uptimeNs\": ").append(System.nanoTime() - startNanos);
+    sb.append(",\n  \"commands\": {");
+    String sep = "\n    ";
+    for (Map.Entry<Parser.Kind, LatencyHistogram> e : commands.entrySet()) {
+      if (e.getValue().count() > 0) {
+        sb.append(sep).append('"').append(e.getKey()).append("\": ");
+        appendJson(sb, e.getValue(), -1);
+        sep = ",\n    ";
+      }
+    }
+    sb.append("\n  },\n  \"storage\": {\n    \"save\": ");
+    appendJson(sb, saves, savedBytes.get());
+    sb.append(",\n    \"journal\": ");
+    appendJson(sb, appends, appendedBytes.get());
+    sb.append(",\n    \"load\": ");
+    appendJson(sb, loads, -1);
+    synchronized (this) {
+      sb.append("\n  },\n  \"tasks\": {\"current\": ").append(Math.max(lastCount, 0))
+          .append(", \"peak\": ").append(peakCount).append(", \"samples\": [");
+      int kept = Math.min(samples, SIZE_SAMPLES);
+      for (int i = 0; i < kept; i++) {
+        int slot = (samples - kept + i) % SIZE_SAMPLES;
+        sb.append(i == 0 ? "[" : ", [")
+            .append(sampleMillis[slot]).append(", ").append(sampleCounts[slot]).append(']');
+      }
+    }
+    sb.append("]}\n}\n");
+
+    try {
+      Path parent = file.getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      throw new YapException("Failed to write metrics to " + file, ex);
+    }
+  }
+
+  private static void appendRow(StringBuilder sb, String name, LatencyHistogram h, long bytes) {
+    sb.append(String.format("\n%-10s %7d %10s %10s %10s", name, h.count(),
+        formatNanos(h.percentile(50)), formatNanos(h.percentile(99)), formatNanos(h.max())));
+    if (bytes >= 0) {
+      sb.append("  ").append(formatBytes(bytes)).append(" written");
+    }
+  }
+
+  private static void appendJson(StringBuilder sb, LatencyHistogram h, long bytes) {
+    sb.append("{\"count\": ").append(h.count())
+        .append(", \"p50Ns\": ").append(h.percentile(50))
+        .append(", \"p99Ns\": ").append(h.percentile(99))
+        .append(", \"maxNs\": ").append(h.max());
+    if (bytes >= 0) {
+      sb.append(", \"bytes\": ").append(bytes);
+    }
+    sb.append('}');
+  }
+
+  static String formatNanos(long nanos) {
+    if (nanos < 1_000) {
+      return nanos + " ns";
+    } else if (nanos < 1_000_000) {
+      return String.format("%.1f us", nanos / 1e3);
+    } else if (nanos < 1_000_000_000) {
+      return String.format("%.2f ms", nanos / 1e6);
+    }
+    return String.format("%.2f s", nanos / 1e9);
+  }
+
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    } else if (bytes < 1024 * 1024) {
+      return String.format("%.1f KB", bytes / 1024.0);
+    }
+    return String.format("%.1f MB", bytes / (1024.0 * 1024));
+  }
+
+  private static String formatUptime(long nanos) {
+    long seconds = nanos / 1_000_000_000;
+    return seconds < 60 ? seconds + "s" : (seconds / 60) + "m " + (seconds % 60) + "s";
+  }
+}
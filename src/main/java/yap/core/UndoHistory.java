@@ -0,0 +1,170 @@
+package yap.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import yap.task.ColumnarTasks;
+import yap.task.Task;
+import yap.task.TaskList;
+
+/**
+ * Undo and redo stacks for {@link CommandEngine}, kept as the change each command made rather
+ * than as copies of the list.
+ *
+ * <p>A {@link Step} records one command: the tasks it inserted or removed and where, or the state
+ * of the tasks it edited before and after. Undo applies the opposite change and redo applies the
+ * same one again, so a step holds only the tasks its command touched. Thousands of steps on a
+ * large list cost memory in proportion to what changed, not to the size of the list. A step
+ * holding many tasks keeps them in a {@link ColumnarTasks} rather than as task objects.
+ *
+ * <p>Steps only fit the list they were recorded against. The history notes the list's {@link
+ * TaskList#version()} after each step and refuses to go on (clearing itself) if the list has
+ * since changed some other way.
+ */
+final class UndoHistory {
+
+  /** Steps kept by default; the oldest is dropped beyond this. */
+  static final int DEFAULT_LIMIT = 10_000;
+
+  /** Tasks in one list of a step from which it is stored in columns; below this, as objects. */
+  static final int COLUMNAR_FROM = 64;
+
+  /** What a step did to the list. */
+  enum Change {
+    INSERT,
+    REMOVE,
+    REPLACE;
+
+    Change inverse() {
+      return this == INSERT ? REMOVE : this == REMOVE ? INSERT : REPLACE;
+    }
+  }
+
+  /** The change made by one command. */
+  static final class Step {
+    final String label; // the command, e.g. "delete 3"
+    final Change change;
+    final int[] indices; // 1-based and increasing, as in TaskList.removeAll/insertAll
+    List<Task> tasks; // INSERT/REMOVE: refreshed with what was removed each time they leave
+    final List<Task> before; // REPLACE: detached copies
+    final List<Task> after;
+
+    private Step(String label, Change change, int[] indices, List<Task> tasks, List<Task> before,
+        List<Task> after) {
+      this.label = label;
+      this.change = change;
+      this.indices = indices;
+      this.tasks = atRest(tasks);
+      this.before = atRest(before);
+      this.after = atRest(after);
+    }
+
+    /** A command that put {@code tasks} into the list at {@code indices}. */
+    static Step inserted(String label, int[] indices, List<Task> tasks) {
+      return new Step(label, Change.INSERT, indices, tasks, null, null);
+    }
+
+    /** A command that took {@code tasks} out of the list from {@code indices}. */
+    static Step removed(String label, int[] indices, List<Task> tasks) {
+      return new Step(label, Change.REMOVE, indices, tasks, null, null);
+    }
+
+    /** A command that changed the tasks at {@code indices} from {@code before} to {@code after}. */
+    static Step replaced(String label, int[] indices, List<Task> before, List<Task> after) {
+      return new Step(label, Change.REPLACE, indices, null, before, after);
+    }
+  }
+
+  /**
+   * Returns tasks to keep in a step: {@code tasks} itself if short, otherwise a columnar copy.
+   * Either way, treat what the list hands out as detached from any task list: a columnar list
+   * builds a new task on every get, so copy it once before inserting the tasks anywhere.
+   */
+  static List<Task> atRest(List<Task> tasks) {
+    return tasks == null || tasks.size() < COLUMNAR_FROM ? tasks : new ColumnarTasks(tasks);
+  }
+
+  private final Deque<Step> undo = new ArrayDeque<>();
+  private final Deque<Step> redo = new ArrayDeque<>();
+  private final int limit;
+  private long version = -1; // version of the list after the last step; -1 while empty
+
+  UndoHistory(int limit) {
+    assert limit > 0 : "History limit must be positive";
+    this.limit = limit;
+  }
+
+  /**
+   * Remembers a command's change; anything that could have been redone is forgotten. If the list
+   * had changed some other way before the command, the older steps no longer fit and are dropped.
+   *
+   * @param versionBefore the list's version before the command ran
+   * @param versionAfter the list's version once it is done
+   */
+  void record(Step step, long versionBefore, long versionAfter) {
+    if (version != -1 && version != versionBefore) {
+      undo.clear();
+    }
+    undo.push(step);
+    if (undo.size() > limit) {
+      undo.removeLast();
+    }
+    redo.clear();
+    version = versionAfter;
+  }
+
+  /** Returns the step to undo; it stays put until {@link #undone(long)}. */
+  Step undo(long listVersion) throws YapException {
+    checkVersion(listVersion);
+    if (undo.isEmpty()) throw new YapException("Nothing to undo.");
+    return undo.peek();
+  }
+
+  /** Returns the step to redo; it stays put until {@link #redone(long)}. */
+  Step redo(long listVersion) throws YapException {
+    checkVersion(listVersion);
+    if (redo.isEmpty()) throw new YapException("Nothing to redo.");
+    return redo.peek();
+  }
+
+  /** Moves the step from {@link #undo(long)} to the redo stack once it has been applied. */
+  void undone(long listVersion) {
+    redo.push(undo.pop());
+    version = listVersion;
+  }
+
+  /** Moves the step from {@link #redo(long)} back to the undo stack once it has been applied. */
+  void redone(long listVersion) {
+    undo.push(redo.pop());
+    version = listVersion;
+  }
+
+  /**
+   * Notes a change made by something other than a command that leaves every recorded index
+   * valid: tasks appended to the end of the list, such as restored ones, or cold tasks put into
+   * the slots their placeholders held. The history carries on.
+   */
+  void indicesKept(long versionBefore, long versionAfter) {
+    if (version == versionBefore) {
+      version = versionAfter;
+    }
+  }
+
+  int undoSize() {
+    return undo.size();
+  }
+
+  int redoSize() {
+    return redo.size();
+  }
+
+  private void checkVersion(long listVersion) throws YapException {
+    if (version != -1 && version != listVersion) {
+      undo.clear();
+      redo.clear();
+      version = -1;
+      throw new YapException("The list changed in a way that can't be undone; history cleared.");
+    }
+  }
+}
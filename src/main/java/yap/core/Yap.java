@@ -1,40 +1,141 @@
 package yap.core;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import yap.io.Storage;
 import yap.io.Ui;
 import yap.parser.Parser;
-import yap.task.Deadlines;
-import yap.task.Events;
 import yap.task.Task;
 import yap.task.TaskList;
-import yap.task.ToDos;
 
 /**
  * Entry point of the Yap application.
  *
- * <p>Responsibilities: initialize UI, Parser, and TaskList; start the main interaction loop with
- * the user. Collaborators: interacts with Parser, TaskList, and UI.
+ * <p>Responsibilities: initialize UI, Storage, and TaskList; start the main interaction loop with
+ * the user. Collaborators: hands every command to {@link CommandEngine} and prints what it returns
+ * through UI.
+ *
+ * <p>The list loads on a background thread while the user is greeted. Until it is loaded, a
+ * {@code find} is answered from the search index when that is current, and any other command
+ * waits for the load.
  */
 public class Yap {
 
-  private final Storage storage;
-  private TaskList tasks;
+  /**
+   * System property: how many months before the current one stay in the main save file. Older
+   * deadlines and events go to cold shards that load on demand, keeping their numbers; 0, the
+   * default, keeps everything in the file and brings back whatever an earlier run moved out.
+   */
+  static final String RECENT_MONTHS_PROPERTY = "yap.recentMonths";
+
+  /** Default for {@link #RECENT_MONTHS_PROPERTY}. */
+  static final int DEFAULT_RECENT_MONTHS = 0;
+
+  /**
+   * System property: days a task stays done in the main save file before the next startup
+   * moves it to the archive; 0, the default, never archives.
+   */
+  static final String ARCHIVE_AFTER_DAYS_PROPERTY = "yap.archiveAfterDays";
+
+  /** Default for {@link #ARCHIVE_AFTER_DAYS_PROPERTY}. */
+  static final int DEFAULT_ARCHIVE_AFTER_DAYS = 0;
+
+  /**
+   * System property: "binary" saves the list in the compact binary format, migrating a text save
+   * file on the next load; anything else keeps the default, human-readable text format.
+   */
+  static final String FORMAT_PROPERTY = "yap.format";
+
   private final Ui ui;
-  private final Parser parser;
+  private final Parser parser = new Parser();
+  private final CompletableFuture<CommandEngine> engine;
+  private volatile Storage finder; // answers find from the search index; null once loaded
+  private final java.nio.file.Path metricsFile; // null unless yap.metricsFile is set
 
-  private boolean inAddMode = false;
   private String userName = "friend";
 
+  /**
+   * Creates the app around the given save file. Setting the {@code yap.commitWindowMs} system
+   * property to a positive value moves saves onto a background writer that batches them; setting
+   * {@code yap.metricsFile} writes the session's {@link Metrics} there on exit; {@code
+   * yap.recentMonths} sets how much history loads at startup (see {@link #coldBefore()}), and
+   * {@code yap.archiveAfterDays} when done tasks are archived (see {@link #archiveBefore()}), and
+   * {@code yap.format} the save file format (see {@link #format()}).
+   */
   public Yap(String filePath) {
+    this(filePath, Long.getLong("yap.commitWindowMs", 0L));
+  }
+
+  public Yap(String filePath, long commitWindowMillis) {
     ui = new Ui();
-    storage = new Storage(filePath);
-    parser = new Parser();
+    metricsFile = Metrics.dumpFile();
+    Metrics metrics = new Metrics();
+    Storage storage = new Storage(
+        filePath, Storage.DEFAULT_COMPACT_THRESHOLD, commitWindowMillis, format());
+    storage.setMetrics(metrics);
+    storage.setColdBefore(coldBefore());
+    storage.setArchiveBefore(archiveBefore());
+    storage.enableSearchIndex();
+    finder = new Storage(filePath, Storage.DEFAULT_COMPACT_THRESHOLD, 0, format());
+    engine = CompletableFuture.supplyAsync(() -> load(storage, metrics), r -> {
+      Thread t = new Thread(r, "yap-load");
+      t.setDaemon(true);
+      t.start();
+    });
+    if (commitWindowMillis > 0 || metricsFile != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "yap-flush"));
+    }
+  }
+
+  private CommandEngine load(Storage storage, Metrics metrics) {
+    TaskList tasks;
     try {
       tasks = new TaskList(storage.load());
     } catch (YapException e) {
-      ui.showLoadingError();
+      ui.showLoadingError(); // now, not when the next command happens to wait for the list
       tasks = new TaskList();
+    } finally {
+      finder = null; // drops the search index it holds
     }
+    return new CommandEngine(tasks, storage, metrics);
+  }
+
+  /**
+   * Returns the first month whose deadlines and events load at startup: the current month minus
+   * {@link #RECENT_MONTHS_PROPERTY} months. Null when the property is 0, which turns cold shards
+   * off, as they are unless asked for.
+   */
+  static YearMonth coldBefore() {
+    int months = Integer.getInteger(RECENT_MONTHS_PROPERTY, DEFAULT_RECENT_MONTHS);
+    return months <= 0 ? null : YearMonth.now().minusMonths(months);
+  }
+
+  /**
+   * Returns the first done day kept in the main save file: today minus {@link
+   * #ARCHIVE_AFTER_DAYS_PROPERTY} days. Null when the property is 0, which turns archiving off,
+   * as it is unless asked for.
+   */
+  static LocalDate archiveBefore() {
+    int days = Integer.getInteger(ARCHIVE_AFTER_DAYS_PROPERTY, DEFAULT_ARCHIVE_AFTER_DAYS);
+    return days <= 0 ? null : LocalDate.now().minusDays(days);
+  }
+
+  /**
+   * Returns the snapshot format chosen by {@link #FORMAT_PROPERTY}: text unless binary is asked
+   * for explicitly, so an existing save file is never converted behind the user's back.
+   */
+  static Storage.Format format() {
+    return "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY, "").trim())
+        ? Storage.Format.BINARY
+        : Storage.Format.TEXT;
+  }
+
+  /** Returns the engine that runs this app's commands, waiting for the list to load. */
+  public CommandEngine getEngine() {
+    return engine.join();
   }
 
   public void run() {
@@ -46,343 +147,164 @@ public class Yap {
     while (!isExit) {
       ui.showLine();
       String input = ui.readCommand();
-      Parser.Parsed cmd = parser.parse(input);
-
-      try {
-        switch (cmd.kind) {
-          case HELP:
-            ui.showMessage(helpText());
-            break;
-
-          case SHOW:
-            if (tasks.size() == 0) {
-              ui.showMessage("No tasks yet.");
-            } else {
-              ui.showMessage(tasks.render());
-            }
-            break;
-
-          case ADD:
-            if (!inAddMode && !"done".equalsIgnoreCase(cmd.rest)) {
-              inAddMode = true;
-              ui.showMessage(
-                  "Entered Add mode. Use:\n"
-                      + "  t <name>\n"
-                      + "  d <name>/<yyyy-MM-dd>\n"
-                      + "  e <name>/<yyyy-MM-dd>/<HHmm>/<HHmm>\n"
-                      + "Type 'done' to exit Add mode.");
-              break;
-            }
-            if (inAddMode) {
-              if ("done".equalsIgnoreCase(cmd.rest)) {
-                inAddMode = false;
-                ui.showMessage("Exited Add mode.");
-              } else {
-                handleAddLine(cmd.rest);
-                storage.save(tasks.all());
-              }
-            } else {
-              ui.showError("Say 'add' first to enter Add mode.");
-            }
-            break;
-
-          case DELETE:
-            handleDelete(cmd.rest);
-            storage.save(tasks.all());
-            break;
-
-          case COMPLETE:
-            handleComplete(cmd.rest);
-            storage.save(tasks.all());
-            break;
-
-          case EXIT:
-            isExit = true;
-            break;
-
-          case FIND:
-            handleFind(cmd.rest);
-            break;
-
-          case EDIT:
-            handleEdit(cmd.rest);
-            storage.save(tasks.all());
-            break;
-
-          case UNKNOWN:
-          default:
-            if (inAddMode) {
-              handleAddLine(cmd.rest);
-              storage.save(tasks.all());
-            } else {
-              ui.showError("I don't understand. Type 'help' for commands.");
-            }
-        }
-      } catch (YapException ex) {
-        ui.showError(ex.getMessage());
+      Parser.Parsed cmd = parser.parse(input == null ? "" : input.trim());
+      Storage loading = finder;
+      CommandResult result = cmd.kind == Parser.Kind.FIND && loading != null
+          ? findFromIndex(loading, cmd.rest)
+          : null;
+      if (result == null) {
+        result = getEngine().execute(cmd);
       }
+      boolean isFramed = cmd.kind == Parser.Kind.FIND; // the console has always boxed find output
+      if (isFramed) {
+        ui.showLine();
+      }
+      print(ui, engine.getNow(null), result); // a find answered from the index lists nothing
+      if (isFramed) {
+        ui.showLine();
+      }
+      isExit = result.isExit();
+    }
+    try {
+      flush();
+    } catch (YapException ex) {
+      ui.showError(ex.getMessage());
     }
     ui.showGoodbye(userName);
   }
 
-  private String helpText() {
-    return String.join(
-            "\n",
-            "Commands:",
-            "  show / list                  - list tasks",
-            "  add                          - enter Add mode; then use t/d/e lines",
-            "  delete <number|exact name>   - delete a task",
-            "  complete <number|exact name> - mark a task done",
-            "  edit <number|exact name> [n/NAME] [d/YYYY-MM-DD] [t/HHmm-HHmm]",
-            "      Rules:",
-            "        - Todo: only n/ allowed",
-            "        - Deadline: n/, d/ allowed",
-            "        - Event: n/, d/, and t/ allowed (t/ must be HHmm-HHmm)",
-            "  find <keyword>               - list tasks whose description contains the keyword",
-            "  help                         - show this help",
-            "  exit / quit                  - exit the program"
-    );
-  }
-
-  private void handleAddLine(String line) throws YapException {
-    String trimmed = line.trim();
-    if (trimmed.isEmpty()) {
-      ui.showError("Empty add line.");
-      return;
-    }
-
-    char kind = Character.toLowerCase(trimmed.charAt(0));
-    String payload = trimmed.length() > 1 ? trimmed.substring(1).trim() : "";
-
-    switch (kind) {
-      case 't':
-        if (payload.isEmpty()) throw new YapException("ToDo name is empty.");
-        Task t = new ToDos(payload);
-        tasks.add(t);
-        ui.showMessage("Added: " + t);
-        break;
-      case 'd':
-        String[] parts = payload.split("/", 2);
-        if (parts.length != 2) throw new YapException("Deadline needs: d <name>/<yyyy-MM-dd>");
-        Task d = new Deadlines(parts[0].trim(), parts[1].trim());
-        tasks.add(d);
-        ui.showMessage("Added: " + d);
-        break;
-      case 'e':
-        String[] eParts = payload.split("/", 4);
-        if (eParts.length != 4)
-          throw new YapException("Event needs: e <name>/<yyyy-MM-dd>/<HHmm>/<HHmm>");
-        Task e = new Events(eParts[0].trim(), eParts[1].trim(), eParts[2].trim(), eParts[3].trim());
-        tasks.add(e);
-        ui.showMessage("Added: " + e);
-        break;
-      default:
-        throw new YapException("Unknown add-line type. Use t/d/e.");
+  /** Prints a command's output the way the console shows it. */
+  static void print(Ui ui, CommandEngine engine, CommandResult result) {
+    for (CommandResult.Entry entry : result.entries()) {
+      if (entry.isError()) {
+        ui.showError(entry.text());
+      } else if (entry.isListing()) {
+        ui.showTasks(engine.tasks(), entry.from(), entry.count());
+      } else {
+        ui.showMessage(entry.text());
+      }
     }
   }
 
-  private void handleFind(String keyword) {
-    if (keyword == null || keyword.trim().isEmpty()) {
-      ui.showLine();
-      ui.showMessage("Please provide a keyword. Usage: find <keyword>");
-      ui.showLine();
-      return;
-    }
-    java.util.List<Integer> hits = tasks.findIndices(keyword);
-    ui.showLine();
-    if (hits.isEmpty()) {
-      ui.showMessage("No matching tasks found.");
+  /**
+   * Runs one {@code find} against the save file and prints the matches, answering from the search
+   * index sidecar when it is current so the list never loads. Otherwise loads the list, runs the
+   * command as usual and writes the sidecar, so the next search can skip the load.
+   */
+  static void findOnce(String dataFile, String keyword) throws YapException {
+    Ui ui = new Ui();
+    Storage storage = new Storage(dataFile, Storage.DEFAULT_COMPACT_THRESHOLD, 0, format());
+    storage.setColdBefore(coldBefore());
+    storage.setArchiveBefore(archiveBefore());
+    CommandResult quick = findFromIndex(storage, keyword);
+    if (quick == null) {
+      CommandEngine engine = new CommandEngine(new TaskList(storage.load()), storage);
+      print(ui, engine, engine.execute("find " + keyword));
+      engine.flush();
+      storage.writeSearchIndex();
     } else {
-      ui.showMessage("Here are the matching tasks in your list:");
-      ui.showMessage(tasks.renderByIndices(hits));
+      print(ui, null, quick);
     }
-    ui.showLine();
   }
 
-  private void handleDelete(String arg) throws YapException {
-    if (arg.isBlank()) throw new YapException("Delete needs a number or exact task name.");
-    Task removed;
-    if (isInteger(arg)) {
-      removed = tasks.remove(Integer.parseInt(arg));
-    } else {
-      int idx = indexOfExactName(arg);
-      if (idx < 0) throw new YapException("Task not found: " + arg);
-      removed = tasks.remove(idx + 1);
+  /**
+   * Answers a {@code find} from the search index sidecar and the journal, with the same output as
+   * the command, without loading the list.
+   *
+   * @return the result, or null if the sidecar cannot answer and the list must be loaded
+   */
+  static CommandResult findFromIndex(Storage storage, String keyword) {
+    List<Task> hits;
+    try {
+      hits = keyword.isBlank() ? null : storage.findWithoutLoading(keyword);
+    } catch (YapException ex) {
+      return null; // only a shortcut: the loaded list can still answer
     }
-    ui.showMessage("Removed: " + removed);
-  }
-
-  private void handleComplete(String arg) throws YapException {
-    if (arg.isBlank()) throw new YapException("Complete needs a number or exact task name.");
-    Task t;
-    if (isInteger(arg)) {
-      t = tasks.get(Integer.parseInt(arg));
+    if (hits == null) {
+      return null;
+    }
+    CommandResult result = new CommandResult();
+    if (hits.isEmpty()) {
+      result.message("No matching tasks found.");
     } else {
-      int idx = indexOfExactName(arg);
-      if (idx < 0) throw new YapException("Task not found: " + arg);
-      t = tasks.get(idx + 1);
+      result.message("Here are the matching tasks in your list:");
+      result.message(new TaskList(hits).renderMatches(keyword));
     }
-    t.markDone();
-    ui.showMessage("Marked as done: " + t);
+    return result;
   }
 
-  private int indexOfExactName(String name) {
-    for (int i = 0; i < tasks.size(); i++) {
-      if (tasks.all().get(i).getName().equals(name)) {
-        return i;
-      }
+  /** Waits for any background saves to reach the disk, then writes the metrics file if set. */
+  public void flush() throws YapException {
+    CommandEngine loaded = getEngine();
+    loaded.flush();
+    if (metricsFile != null) {
+      loaded.metrics().writeTo(metricsFile);
     }
-    return -1;
   }
 
-  private static boolean isInteger(String s) {
+  private void flushQuietly() {
     try {
-      Integer.parseInt(s.trim());
-      return true;
-    } catch (Exception e) {
-      return false;
+      flush();
+    } catch (YapException ex) {
+      System.err.println("Failed to save tasks on exit: " + ex.getMessage());
     }
   }
 
-  private void handleEdit(String rest) throws YapException {
-    if (rest == null || rest.trim().isEmpty()) {
-      throw new YapException("Usage: edit <index|exact name> [n/NAME] [d/YYYY-MM-DD] [t/HHmm-HHmm]");
+  /**
+   * Launches the Yap application. With {@code --batch <file>}, runs the commands in that file
+   * without prompting instead; {@code --data <file>} picks the save file and {@code --checkpoint
+   * <n>} saves every n commands during a batch run. {@code --metrics <file>} writes the session's
+   * command and storage timings there on exit. {@code --find <keyword>} prints the matching
+   * tasks and exits, without loading the list when the search index is current.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(String[] args) {
+    String dataFile = "data/tasks.txt";
+    String script = null;
+    String keyword = null;
+    int checkpointEvery = 0;
+    for (int i = 0; i < args.length; i++) {
+      boolean hasValue = i + 1 < args.length;
+      if (args[i].equals("--batch") && hasValue) {
+        script = args[++i];
+      } else if (args[i].equals("--find") && hasValue) {
+        keyword = args[++i];
+      } else if (args[i].equals("--data") && hasValue) {
+        dataFile = args[++i];
+      } else if (args[i].equals("--metrics") && hasValue) {
+        System.setProperty(Metrics.FILE_PROPERTY, args[++i]);
+      } else if (args[i].equals("--checkpoint") && hasValue && isInteger(args[i + 1])) {
+        checkpointEvery = Math.max(0, Integer.parseInt(args[++i].trim()));
+      } else {
+        System.err.println("Usage: yap [--batch <commands file> [--checkpoint <n>]"
+            + " | --find <keyword>] [--data <file>] [--metrics <file>]");
+        System.exit(2);
+      }
     }
 
-    String s = rest.trim();
-    int sp = s.indexOf(' ');
-    if (sp < 0) throw new YapException("No fields to change. Provide n/, d/, or t/.");
-
-    String target = s.substring(0, sp).trim();
-    String opts   = s.substring(sp + 1).trim();
-
-    // locate task by index or exact name
-    int idx0;
-    if (isInteger(target)) {
-      int oneBased = Integer.parseInt(target);
-      if (oneBased < 1 || oneBased > tasks.size()) throw new YapException("Invalid index.");
-      idx0 = oneBased - 1;
-    } else {
-      int byName = indexOfExactName(target);
-      if (byName < 0) throw new YapException("Task not found: " + target);
-      idx0 = byName;
+    if (script == null && keyword == null) {
+      new Yap(dataFile).run();
+      return;
     }
-
-    Task original = tasks.all().get(idx0);
-    EditArgs args = parseEditArgs(opts); // your existing n/, d/, t/HHmm-HHmm parser
-
-    // mutate in place with type rules
-    if (original instanceof ToDos) {
-      if (args.date != null || args.timeStart != null || args.timeEnd != null) {
-        throw new YapException("Todo can only change name (use n/).");
-      }
-      String newName = coalesce(args.name, original.getName());
-      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
-      original.setName(newName); // from Task.java
-
-    } else if (original instanceof Deadlines) {
-      if (args.timeStart != null || args.timeEnd != null) {
-        throw new YapException("Deadline can change name and date only (n/, d/).");
+    try {
+      if (keyword != null) {
+        findOnce(dataFile, keyword);
+      } else {
+        new BatchRunner(dataFile, checkpointEvery).run(java.nio.file.Path.of(script));
       }
-      Deadlines dl = (Deadlines) original;
-      String newName = coalesce(args.name, dl.getName());
-      String isoDate = coalesce(args.date, dl.getBy().toString());
-      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
-      dl.setName(newName);
-      dl.setBy(isoDate);
-
-    } else if (original instanceof Events) {
-      Events ev = (Events) original;
-      String newName = coalesce(args.name, ev.getName());
-      String isoDate = coalesce(args.date, ev.getDate().toString());
-      String startHHmm = (args.timeStart != null)
-              ? args.timeStart
-              : ev.getStart().format(java.time.format.DateTimeFormatter.ofPattern("HHmm"));
-      String endHHmm = (args.timeEnd != null)
-              ? args.timeEnd
-              : ev.getEnd().format(java.time.format.DateTimeFormatter.ofPattern("HHmm"));
-      if (newName == null || newName.isBlank()) throw new YapException("Name cannot be empty.");
-      if (startHHmm.compareTo(endHHmm) >= 0) throw new YapException("Start must be before end.");
-      ev.setName(newName);
-      ev.setDate(isoDate);
-      ev.setStart(startHHmm);
-      ev.setEnd(endHHmm);
-
-    } else {
-      throw new YapException("Unsupported task type for edit.");
+    } catch (YapException e) {
+      System.err.println(Ui.ERROR_PREFIX + e.getMessage());
+      System.exit(1);
     }
-
-    // nudge observers without creating a new object
-    tasks.all().set(idx0, original);
-
-    ui.showMessage("Edited: " + original.toString());
-  }
-
-
-  // Small holder for parsed args
-  private static final class EditArgs {
-    String name;        // from n/
-    String date;        // ISO yyyy-MM-dd from d/
-    String timeStart;   // HHmm from t/ start
-    String timeEnd;     // HHmm from t/ end
   }
 
-  // Mini parser for n/, d/, t/HHmm-HHmm (values may contain spaces for n/)
-  private static EditArgs parseEditArgs(String s) throws YapException {
-    EditArgs a = new EditArgs();
-    if (s == null || s.isBlank()) return a;
-
-    // Find prefix positions
-    int nPos = indexOfWordPref(s, "n/");
-    int dPos = indexOfWordPref(s, "d/");
-    int tPos = indexOfWordPref(s, "t/");
-
-    // Extract substring for each prefix up to the next prefix
-    a.name = sliceVal(s, nPos, dPos, tPos);
-    a.date = sliceVal(s, dPos, nPos, tPos);
-
-    String tVal = sliceVal(s, tPos, nPos, dPos);
-    if (tVal != null && !tVal.isBlank()) {
-      String v = tVal.trim();
-      // accept "HHmm-HHmm" or a single "HHmm" (will be treated as both start & end invalid; better to require dash)
-      String[] parts = v.split("-");
-      if (parts.length != 2) throw new YapException("Time uses t/HHmm-HHmm (e.g., t/0900-1030).");
-      a.timeStart = parts[0].trim();
-      a.timeEnd   = parts[1].trim();
-      if (!a.timeStart.matches("\\d{4}") || !a.timeEnd.matches("\\d{4}")) {
-        throw new YapException("Time must be 4 digits (HHmm).");
-      }
+  private static boolean isInteger(String s) {
+    try {
+      Integer.parseInt(s.trim());
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
     }
-
-    return a;
-  }
-
-  // helpers for prefix parsing
-  private static int indexOfWordPref(String s, String pref) {
-    // match at start or after space
-    int i = s.indexOf(" " + pref);
-    int j = (s.startsWith(pref) ? 0 : -1);
-    if (j == 0) return 0;
-    return i < 0 ? -1 : i + 1;
-  }
-
-  private static String sliceVal(String s, int selfPos, int other1Pos, int other2Pos) {
-    if (selfPos < 0) return null;
-    int end = s.length();
-    if (other1Pos >= 0 && other1Pos > selfPos) end = Math.min(end, other1Pos);
-    if (other2Pos >= 0 && other2Pos > selfPos) end = Math.min(end, other2Pos);
-    String raw = s.substring(selfPos + 2, end).trim(); // skip "x/"
-    return raw.isEmpty() ? null : raw;
-  }
-
-  private static <T> T coalesce(T a, T b) { return (a != null) ? a : b; }
-
-  /**
-   * Launches the Yap application.
-   *
-   * @param args command-line arguments
-   */
-  public static void main(String[] args) {
-    new Yap("data/tasks.txt").run();
   }
 }
@@ -0,0 +1,202 @@
+package yap.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import yap.task.Task;
+
+/**
+ * Compressed, append-only store of tasks that have been done for a while, next to the save file
+ * as "&lt;file&gt;.archive".
+ *
+ * <p>The file is a run of gzip members, one per write, which together read as a single stream of
+ * text lines: a task in the {@link TaskCodec} format, or "- | N" once entry N has been restored.
+ * Entries are numbered from 1 in the order they were archived and keep their number for good.
+ * Nothing already written ever changes, and reading decompresses as it goes, so neither the
+ * archive's size nor a search of it puts more than the matches on the heap.
+ *
+ * <p>A write compresses its member in memory and appends it in place with one write. If that
+ * write fails, the file is truncated back to its old length, so a cut-short member never ends up
+ * in the middle of the file, where it would hide every member after it. Only the new member's
+ * bytes are written, whatever the archive's size.
+ *
+ * <p>Tasks are archived only by {@link Storage#load()}, when {@link
+ * Storage#setArchiveBefore(java.time.LocalDate)} is set: a task done during a session stays in the
+ * main file, through every checkpoint and compaction, until a later load finds it old enough.
+ */
+public final class Archive {
+
+  /** An archived task and the number that {@code restore} takes. */
+  public static final class Entry {
+    private final int number;
+    private final Task task;
+
+    Entry(int number, Task task) {
+      this.number = number;
+      this.task = task;
+    }
+
+    public int number() {
+      return number;
+    }
+
+    public Task task() {
+      return task;
+    }
+  }
+
+  private static final String RESTORED = "- | ";
+
+  private final Path file;
+
+  Archive(Path file) {
+    this.file = file;
+  }
+
+  /** Returns the archive file used for the given save file. */
+  static Path fileFor(Path saveFile) {
+    return saveFile.resolveSibling(saveFile.getFileName() + ".archive");
+  }
+
+  /** Adds the tasks as one new gzip member at the end. */
+  void append(List<Task> tasks) throws IOException {
+    StringBuilder sb = new StringBuilder(tasks.size() * 48);
+    for (Task t : tasks) {
+      TaskCodec.appendTo(sb, t);
+      sb.append('\n');
+    }
+    write(sb);
+  }
+
+  /** Records entries as restored, so they no longer show up or restore twice. */
+  void markRestored(int[] numbers) throws IOException {
+    StringBuilder sb = new StringBuilder(numbers.length * 12);
+    for (int n : numbers) {
+      sb.append(RESTORED).append(n).append('\n');
+    }
+    write(sb);
+  }
+
+  /**
+   * Returns the entries still archived whose names contain {@code keyword}, ignoring case. Lines
+   * are checked for the keyword before being parsed, so only likely matches become tasks.
+   */
+  List<Entry> find(String keyword) throws IOException {
+    String needle = keyword.trim().toLowerCase();
+    List<Entry> hits = new ArrayList<>();
+    BitSet restored = scan((line, number) -> {
+      if (containsIgnoreCase(line, needle)) {
+        Task t = TaskCodec.parse(line);
+        if (t != null && t.getName().toLowerCase().contains(needle)) {
+          hits.add(new Entry(number, t));
+        }
+      }
+    });
+    hits.removeIf(e -> restored.get(e.number));
+    return hits;
+  }
+
+  /** Returns the entries with the given numbers that are still archived, in archive order. */
+  List<Entry> read(int[] numbers) throws IOException {
+    BitSet wanted = new BitSet();
+    for (int n : numbers) {
+      wanted.set(n);
+    }
+    List<Entry> found = new ArrayList<>();
+    BitSet restored = scan((line, number) -> {
+      if (wanted.get(number)) {
+        Task t = TaskCodec.parse(line);
+        if (t != null) {
+          found.add(new Entry(number, t));
+        }
+      }
+    });
+    found.removeIf(e -> restored.get(e.number));
+    return found;
+  }
+
+  /**
+   * Streams the archive, passing each task line and its entry number to {@code onTask}.
+   *
+   * @return the numbers of restored entries
+   */
+  private BitSet scan(ObjIntConsumer<String> onTask) throws IOException {
+    BitSet restored = new BitSet();
+    if (!Files.exists(file)) {
+      return restored;
+    }
+    int number = 0;
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)),
+        StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        if (line.startsWith(RESTORED)) {
+          try {
+            restored.set(Integer.parseInt(line.substring(RESTORED.length()).trim()));
+          } catch (NumberFormatException ex) {
+            // corrupted mark: ignore it, like a corrupted task line
+          }
+        } else if (!TaskCodec.isSkippable(line)) {
+          onTask.accept(line, ++number); // numbered even if unparsable, so numbers never shift
+        }
+      }
+    } catch (EOFException | ZipException ex) {
+      // damaged on disk, e.g. a crash inside a write: keep what came before it
+    }
+    return restored;
+  }
+
+  private void write(CharSequence lines) throws IOException {
+    Path parent = file.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    ByteArrayOutputStream member = new ByteArrayOutputStream(lines.length() / 2 + 64);
+    try (OutputStream out = new GZIPOutputStream(member)) {
+      out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    try (FileChannel ch = FileChannel.open(
+        file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      long length = ch.size();
+      try {
+        ByteBuffer bytes = ByteBuffer.wrap(member.toByteArray());
+        while (bytes.hasRemaining()) {
+          ch.write(bytes, length + bytes.position());
+        }
+        ch.force(false);
+      } catch (IOException ex) {
+        ch.truncate(length); // back to the members already there
+        throw ex;
+      }
+    }
+  }
+
+  private static boolean containsIgnoreCase(String s, String lowerNeedle) {
+    int n = lowerNeedle.length();
+    for (int i = 0; i + n <= s.length(); i++) {
+      if (s.regionMatches(true, i, lowerNeedle, 0, n)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
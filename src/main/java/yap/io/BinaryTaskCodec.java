@@ -0,0 +1,169 @@
+package yap.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.Events;
+import yap.task.Task;
+import yap.task.ToDos;
+
+/**
+ * Binary snapshot format.
+ *
+ * <pre>
+ * header : "YAPB" | version u8 | generation i64 | count i32
+ * record : tag u8 ('T', 'D', 'E', '@') | done u8 | nameLen varint | name UTF-8
+ *          done 2 adds  doneEpochDay i32
+ *          D adds  epochDay i32
+ *          E adds  epochDay i32 | startMinute i16 | endMinute i16
+ *          @ adds  ordinal i32 (the name is the shard's month, e.g. "2019-12")
+ * </pre>
+ *
+ * <p>Dates are stored as epoch days and times as minutes of the day, so loading never goes
+ * through a date parser. The done byte is 0 (open), 1 (done, day unknown) or 2 (done, day
+ * follows); version 1 files never use 2 and still load. Tag '@' marks a {@link ColdTask}
+ * reference, new in version 3.
+ */
+final class BinaryTaskCodec {
+
+  static final byte[] MAGIC = {'Y', 'A', 'P', 'B'};
+  static final int VERSION = 3;
+
+  private static final byte TODO = 'T';
+  private static final byte DEADLINE = 'D';
+  private static final byte EVENT = 'E';
+  private static final byte COLD = '@';
+
+  /** Longest name a record may claim; a garbled length beyond it is not allocated. */
+  static final int MAX_NAME_BYTES = 1 << 20;
+
+  private static final int DONE = 1;
+  private static final int DONE_ON = 2;
+
+  private BinaryTaskCodec() {}
+
+  static void writeHeader(DataOutput out, long generation, int count) throws IOException {
+    out.write(MAGIC);
+    out.writeByte(VERSION);
+    out.writeLong(generation);
+    out.writeInt(count);
+  }
+
+  static void write(DataOutput out, Task t) throws IOException {
+    if (t instanceof ColdTask) {
+      writeCommon(out, COLD, t);
+      out.writeInt(((ColdTask) t).getOrdinal());
+    } else if (t instanceof Deadlines) {
+      Deadlines d = (Deadlines) t;
+      writeCommon(out, DEADLINE, t);
+      out.writeInt((int) d.getBy().toEpochDay());
+    } else if (t instanceof Events) {
+      Events e = (Events) t;
+      writeCommon(out, EVENT, t);
+      out.writeInt((int) e.getDate().toEpochDay());
+      out.writeShort(minuteOfDay(e.getStart()));
+      out.writeShort(minuteOfDay(e.getEnd()));
+    } else {
+      writeCommon(out, TODO, t);
+    }
+  }
+
+  /**
+   * Reads one record.
+   *
+   * @param scratch reusable buffer for name bytes; replaced by a larger one when needed
+   * @return the task, or null if the record is malformed (the rest of the file is unusable),
+   *     including a name length past {@link #MAX_NAME_BYTES} or past the end of the input
+   */
+  static Task read(DataInput in, byte[][] scratch) throws IOException {
+    byte tag = in.readByte();
+    int done = in.readUnsignedByte();
+    int len = readVarInt(in);
+    if (len < 0 || len > MAX_NAME_BYTES
+        || in instanceof InputStream && len > ((InputStream) in).available()) {
+      return null;
+    }
+    if (scratch[0].length < len) {
+      scratch[0] = new byte[Math.max(len, scratch[0].length * 2)];
+    }
+    in.readFully(scratch[0], 0, len);
+    String name = new String(scratch[0], 0, len, StandardCharsets.UTF_8);
+    LocalDate doneOn = done == DONE_ON ? LocalDate.ofEpochDay(in.readInt()) : null;
+
+    Task t;
+    switch (tag) {
+      case TODO:
+        t = new ToDos(name);
+        break;
+      case DEADLINE:
+        t = new Deadlines(name, LocalDate.ofEpochDay(in.readInt()));
+        break;
+      case EVENT:
+        LocalDate date = LocalDate.ofEpochDay(in.readInt());
+        LocalTime start = LocalTime.ofSecondOfDay(in.readShort() * 60L);
+        LocalTime end = LocalTime.ofSecondOfDay(in.readShort() * 60L);
+        t = new Events(name, date, start, end);
+        break;
+      case COLD:
+        int ordinal = in.readInt();
+        try {
+          return new ColdTask(YearMonth.parse(name), ordinal);
+        } catch (DateTimeException ex) {
+          return null;
+        }
+      default:
+        return null;
+    }
+    if (done != 0) {
+      t.setStatus(true);
+      t.setDoneOn(doneOn);
+    }
+    return t;
+  }
+
+  private static void writeCommon(DataOutput out, byte tag, Task t) throws IOException {
+    byte[] name = t.getName().getBytes(StandardCharsets.UTF_8);
+    out.writeByte(tag);
+    boolean hasDay = t.isDone() && t.getDoneOn() != null;
+    out.writeByte(hasDay ? DONE_ON : t.isDone() ? DONE : 0);
+    writeVarInt(out, name.length);
+    out.write(name);
+    if (hasDay) {
+      out.writeInt((int) t.getDoneOn().toEpochDay());
+    }
+  }
+
+  private static int minuteOfDay(LocalTime time) {
+    return time.getHour() * 60 + time.getMinute();
+  }
+
+  private static void writeVarInt(DataOutput out, int value) throws IOException {
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      out.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    return -1;
+  }
+}
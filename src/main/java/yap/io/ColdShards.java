@@ -0,0 +1,274 @@
+package yap.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.Events;
+import yap.task.Task;
+
+/**
+ * Month partitions of old deadlines and events, kept out of the main save file until a query
+ * needs them.
+ *
+ * <p>Each month is one text file in the shard directory, e.g. "tasks.txt.shards/2019-12.txt",
+ * holding the tasks dated in that month in the {@link TaskCodec} format under a header such as
+ * "# shard 2019-12 tasks 120 open 3". Only the headers are read up front, so knowing which months
+ * still have unfinished tasks costs one line per month.
+ *
+ * <p>The main file keeps a {@link ColdTask} in each moved task's slot, naming the month and the
+ * record's place in that month's file. Records therefore never move: {@link #moveOut(List)}
+ * rewrites just the months it adds to and keeps every earlier record where it was, so a reference
+ * stays good whether or not the main file that holds it was saved afterwards. A record whose task
+ * has since been deleted, or edited back into the main file, is dropped by {@link
+ * #dropUnreferenced(Map)}: its line becomes "-", which keeps its place but holds no task, so the
+ * header counts only the records still referred to.
+ */
+final class ColdShards {
+
+  private static final String HEADER = "# shard ";
+  private static final String SUFFIX = ".txt";
+  private static final String DROPPED = "-"; // a record nothing refers to any more
+  private static final int HEADER_MAX = 96; // bytes read to find the header line
+
+  private final Path dir;
+  private final TreeMap<YearMonth, int[]> shards = new TreeMap<>(); // month -> {tasks, open}
+
+  ColdShards(Path dir) {
+    this.dir = dir;
+  }
+
+  /** Returns the shard directory used for the given save file. */
+  static Path dirFor(Path file) {
+    return file.resolveSibling(file.getFileName() + ".shards");
+  }
+
+  /** Returns the month a task is filed under, or null for tasks without a date (ToDos). */
+  static YearMonth monthOf(Task t) {
+    if (t instanceof Deadlines) {
+      return YearMonth.from(((Deadlines) t).getBy());
+    } else if (t instanceof Events) {
+      return YearMonth.from(((Events) t).getDate());
+    }
+    return null;
+  }
+
+  /** Reads the header of every shard on disk, forgetting anything known before. */
+  void scan() throws IOException {
+    shards.clear();
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+      for (Path p : files) {
+        YearMonth month = monthOfFile(p);
+        if (month != null) {
+          shards.put(month, readCounts(p));
+        }
+      }
+    }
+  }
+
+  /** Number of records in all shards that were still referred to when last written. */
+  int taskCount() {
+    int n = 0;
+    for (int[] counts : shards.values()) {
+      n += counts[0];
+    }
+    return n;
+  }
+
+  /** Returns false only if the month's shard is known to hold nothing unfinished. */
+  boolean hasOpen(YearMonth month) {
+    int[] counts = shards.get(month);
+    return counts == null || counts[1] > 0;
+  }
+
+  /**
+   * Files the given tasks under their months, after whatever each month's shard already holds.
+   * Only the months that receive tasks are rewritten.
+   *
+   * @param tasks tasks that all have a month (see {@link #monthOf(Task)})
+   * @return a reference to each task's new record, in the order of {@code tasks}
+   */
+  List<ColdTask> moveOut(List<Task> tasks) throws IOException {
+    TreeMap<YearMonth, List<String>> byMonth = new TreeMap<>();
+    for (Task t : tasks) {
+      byMonth.computeIfAbsent(monthOf(t), m -> new ArrayList<>()).add(TaskCodec.serialize(t));
+    }
+    Files.createDirectories(dir);
+    Map<YearMonth, Integer> next = new HashMap<>(); // month -> ordinal of its first new record
+    for (Map.Entry<YearMonth, List<String>> e : byMonth.entrySet()) {
+      Path p = fileFor(e.getKey());
+      List<String> records = Files.exists(p) ? readRecords(p) : new ArrayList<>();
+      next.put(e.getKey(), records.size());
+      records.addAll(e.getValue());
+      shards.put(e.getKey(), write(p, e.getKey(), records));
+    }
+    List<ColdTask> refs = new ArrayList<>(tasks.size());
+    for (Task t : tasks) {
+      YearMonth month = monthOf(t);
+      int ordinal = next.get(month);
+      next.put(month, ordinal + 1);
+      refs.add(new ColdTask(month, ordinal));
+    }
+    return refs;
+  }
+
+  /**
+   * Drops the records that no reference points to any more, rewriting only the months whose
+   * header counts more records than they have references, and deleting a month left with none.
+   * Trailing dropped records are cut off, as no reference can point past the last one kept.
+   *
+   * @param refs every reference the main file holds, by month, as loaded
+   * @return the number of records dropped
+   */
+  int dropUnreferenced(Map<YearMonth, ? extends Collection<ColdTask>> refs) throws IOException {
+    int dropped = 0;
+    for (YearMonth month : new ArrayList<>(shards.keySet())) {
+      Collection<ColdTask> live = refs.containsKey(month) ? refs.get(month) : List.of();
+      if (shards.get(month)[0] <= live.size()) {
+        continue;
+      }
+      Path p = fileFor(month);
+      if (live.isEmpty()) {
+        dropped += shards.remove(month)[0];
+        Files.deleteIfExists(p);
+        continue;
+      }
+      BitSet kept = new BitSet();
+      for (ColdTask ref : live) {
+        kept.set(ref.getOrdinal());
+      }
+      List<String> records = readRecords(p);
+      List<String> compact = new ArrayList<>(Math.min(records.size(), kept.length()));
+      for (int i = 0; i < records.size() && i < kept.length(); i++) {
+        compact.add(kept.get(i) ? records.get(i) : DROPPED);
+      }
+      int before = shards.get(month)[0];
+      int[] counts = write(p, month, compact);
+      shards.put(month, counts);
+      dropped += before - counts[0];
+    }
+    return dropped;
+  }
+
+  /**
+   * Reads every record of a month's shard.
+   *
+   * @return the tasks by ordinal, with null for a corrupted record; empty if there is no shard
+   */
+  List<Task> read(YearMonth month) throws IOException {
+    Path p = fileFor(month);
+    List<Task> out = new ArrayList<>();
+    if (!Files.exists(p)) {
+      return out;
+    }
+    for (String record : readRecords(p)) {
+      out.add(TaskCodec.parse(record));
+    }
+    return out;
+  }
+
+  private Path fileFor(YearMonth month) {
+    return dir.resolve(month + SUFFIX);
+  }
+
+  private static YearMonth monthOfFile(Path p) {
+    String name = p.getFileName().toString();
+    try {
+      return YearMonth.parse(name.substring(0, name.length() - SUFFIX.length()));
+    } catch (DateTimeException ex) {
+      return null; // not a shard, e.g. a leftover temporary file
+    }
+  }
+
+  /** Reads the counts from the header line, or counts the tasks if the header is missing. */
+  private static int[] readCounts(Path p) throws IOException {
+    byte[] head = new byte[HEADER_MAX];
+    int n;
+    try (InputStream in = Files.newInputStream(p)) {
+      n = in.readNBytes(head, 0, head.length);
+    }
+    String first = new String(head, 0, n, StandardCharsets.UTF_8);
+    int eol = first.indexOf('\n');
+    if (first.startsWith(HEADER) && eol > 0) {
+      String[] words = first.substring(0, eol).trim().split("\\s+"); // # shard M tasks N open K
+      if (words.length == 7) {
+        try {
+          return new int[] {Integer.parseInt(words[4]), Integer.parseInt(words[6])};
+        } catch (NumberFormatException ex) {
+          // fall through and count
+        }
+      }
+    }
+    return counts(readRecords(p));
+  }
+
+  private static int[] counts(List<String> records) {
+    int tasks = 0;
+    int open = 0;
+    for (String record : records) {
+      if (record.equals(DROPPED)) {
+        continue;
+      }
+      tasks++;
+      Task t = TaskCodec.parse(record);
+      if (t != null && !t.isDone()) {
+        open++;
+      }
+    }
+    return new int[] {tasks, open};
+  }
+
+  /**
+   * Returns the record lines in file order; a corrupted or dropped one still takes up its ordinal.
+   */
+  private static List<String> readRecords(Path p) throws IOException {
+    List<String> out = new ArrayList<>();
+    try (BufferedReader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        if (!TaskCodec.isSkippable(line)) {
+          out.add(line);
+        }
+      }
+    }
+    return out;
+  }
+
+  private static int[] write(Path p, YearMonth month, List<String> records) throws IOException {
+    int[] counts = counts(records);
+    StringBuilder sb = new StringBuilder(64 + records.size() * 32);
+    sb.append(HEADER).append(month).append(" tasks ").append(counts[0])
+        .append(" open ").append(counts[1]).append(System.lineSeparator());
+    for (String record : records) {
+      sb.append(record).append(System.lineSeparator());
+    }
+    Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+    Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+    try {
+      Files.move(tmp, p, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return counts;
+  }
+}
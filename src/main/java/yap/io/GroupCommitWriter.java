@@ -0,0 +1,204 @@
+package yap.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import yap.core.YapException;
+
+/**
+ * Single background thread that performs {@link Storage}'s disk writes.
+ *
+ * <p>Callers hand over fully serialized bytes, so nothing here touches live {@code Task} objects.
+ * After the first write of a burst arrives the thread waits for the commit window, then drains
+ * everything queued so far: only the newest snapshot is written (it already contains every earlier
+ * change), and the journal records queued after it are appended in one write.
+ *
+ * <p>A failed write is reported once, to the next caller of {@link #submit} or {@link #flush()},
+ * and then forgotten so later writes go ahead. Journal records that failed, or that build on ones
+ * that failed, are dropped rather than appended to a journal missing their predecessors; the
+ * writer stays in that state until a snapshot is written, which {@link #needsSnapshot()} asks
+ * the owner to submit.
+ */
+final class GroupCommitWriter {
+
+  /** Performs the physical writes; implemented by {@link Storage}. */
+  interface Sink {
+    void writeSnapshot(byte[] content) throws IOException;
+
+    void appendJournal(byte[] records) throws IOException;
+  }
+
+  private static final class Op {
+    final boolean isSnapshot;
+    final byte[] bytes;
+
+    Op(boolean isSnapshot, byte[] bytes) {
+      this.isSnapshot = isSnapshot;
+      this.bytes = bytes;
+    }
+  }
+
+  private final Sink sink;
+  private final long windowMillis;
+  private final Object lock = new Object();
+  private final ArrayDeque<Op> pending = new ArrayDeque<>();
+  private final Thread thread;
+
+  private long submitted = 0;
+  private long completed = 0;
+  private long coalesced = 0;
+  private boolean isUrgent = false;
+  private IOException failure; // not yet reported
+  private boolean isSnapshotNeeded = false; // journal lost records; only a snapshot repairs it
+
+  GroupCommitWriter(Sink sink, long windowMillis, String name) {
+    assert windowMillis > 0 : "Commit window must be positive";
+    this.sink = sink;
+    this.windowMillis = windowMillis;
+    this.thread = new Thread(this::loop, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  void submitSnapshot(byte[] content) throws YapException {
+    submit(new Op(true, content));
+  }
+
+  void submitJournal(byte[] records) throws YapException {
+    submit(new Op(false, records));
+  }
+
+  /** Writes everything submitted so far without waiting for the window, then returns. */
+  void flush() throws YapException {
+    synchronized (lock) {
+      long target = submitted;
+      if (!pending.isEmpty()) {
+        isUrgent = true;
+        lock.notifyAll();
+      }
+      try {
+        while (completed < target && failure == null) {
+          lock.wait();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new YapException("Interrupted while flushing saves", ex);
+      }
+      throwIfFailed();
+    }
+  }
+
+  /**
+   * Returns true if journal records were lost to a failed write, so the file no longer matches
+   * memory until the whole list is saved as a snapshot again.
+   */
+  boolean needsSnapshot() {
+    synchronized (lock) {
+      return isSnapshotNeeded;
+    }
+  }
+
+  /** Number of submitted writes that were absorbed into another write instead of hitting disk. */
+  long coalescedCount() {
+    synchronized (lock) {
+      return coalesced;
+    }
+  }
+
+  private void submit(Op op) throws YapException {
+    synchronized (lock) {
+      throwIfFailed();
+      pending.add(op);
+      submitted++;
+      lock.notifyAll();
+    }
+  }
+
+  /** Reports a failed write once; the next call goes ahead. */
+  private void throwIfFailed() throws YapException {
+    if (failure != null) {
+      IOException reported = failure;
+      failure = null;
+      throw new YapException("Background save failed: " + reported.getMessage(), reported);
+    }
+  }
+
+  private void loop() {
+    try {
+      while (true) {
+        List<Op> batch;
+        synchronized (lock) {
+          while (pending.isEmpty()) {
+            lock.wait();
+          }
+          long deadline = System.currentTimeMillis() + windowMillis;
+          long remaining;
+          while (!isUrgent && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            lock.wait(remaining);
+          }
+          isUrgent = false;
+          batch = new ArrayList<>(pending);
+          pending.clear();
+        }
+
+        int writes = 0;
+        IOException error = null;
+        try {
+          writes = write(batch);
+        } catch (IOException ex) {
+          error = ex;
+        }
+
+        synchronized (lock) {
+          if (error != null) {
+            if (failure == null) {
+              failure = error;
+            }
+            isSnapshotNeeded = true; // a failed snapshot leaves the old one, with a journal short
+          }
+          completed += batch.size();
+          coalesced += batch.size() - writes;
+          lock.notifyAll();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes one batch and returns how many physical writes it took. Journal records are skipped
+   * while a snapshot is needed and the batch brings none.
+   */
+  private int write(List<Op> batch) throws IOException {
+    int start = 0;
+    int writes = 0;
+    for (int i = batch.size() - 1; i >= 0; i--) {
+      if (batch.get(i).isSnapshot) {
+        sink.writeSnapshot(batch.get(i).bytes);
+        synchronized (lock) {
+          isSnapshotNeeded = false;
+        }
+        writes++;
+        start = i + 1;
+        break;
+      }
+    }
+    boolean isJournalBroken;
+    synchronized (lock) {
+      isJournalBroken = isSnapshotNeeded;
+    }
+    if (start < batch.size() && !isJournalBroken) {
+      ByteArrayOutputStream records = new ByteArrayOutputStream();
+      for (int i = start; i < batch.size(); i++) {
+        records.writeBytes(batch.get(i).bytes);
+      }
+      sink.appendJournal(records.toByteArray());
+      writes++;
+    }
+    return writes;
+  }
+}
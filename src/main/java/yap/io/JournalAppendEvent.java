@@ -0,0 +1,22 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for one journal record appended by a mutating command. */
+@Name("yap.JournalAppend")
+@Label("Append to Journal")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class JournalAppendEvent extends jdk.jfr.Event {
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Background")
+  boolean background;
+}
@@ -0,0 +1,586 @@
+package yap.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import yap.task.Task;
+
+/**
+ * Search index for a snapshot, binary or text, kept next to it as "&lt;file&gt;.idx", so a keyword
+ * can be looked up without parsing the snapshot.
+ *
+ * <pre>
+ * header     : "YAPX" | version u8 | 3 unused | generation i64 | snapshotSize i64
+ *              | taskCount i32 | tokenCount i32 | tokenBytes i32 | postingCount i32
+ *              | suffixCount i32 | 4 unused | crc32 i64
+ * offsets    : taskCount x i32, where each snapshot record (or text line) starts
+ * dictionary : tokenCount x (tokenStart i32 | tokenLength i32 | postingStart i32
+ *              | postingCount i32), sorted by token
+ * tokens     : tokenBytes of UTF-8
+ * postings   : postingCount x i32, task ordinals, increasing within each token
+ * suffixes   : suffixCount x (token i32 | offset i32), every suffix of every token, sorted by
+ *              its bytes
+ * </pre>
+ *
+ * <p>Tokens are the same as {@code TokenIndex} uses: maximal runs of letters and digits in the
+ * lowercased name. A search term can sit anywhere inside a token, so it is looked up as a prefix
+ * of the sorted suffixes: a binary search finds the first, and the tokens containing the term
+ * follow it. The header names the snapshot generation and size it was built from, and the CRC
+ * covers everything after the header, so a stale or torn sidecar is never used; {@link #open}
+ * returns null instead and the caller rebuilds it.
+ *
+ * <p>Neither file is mapped: a running app replaces both while a search may still be using them,
+ * which a mapping would block on Windows. {@link #open} reads the sidecar once and checks its CRC
+ * then, so one instance serves every search of a generation, and {@link #read} fetches the few
+ * snapshot records it needs with positional reads on a channel the caller holds for one search.
+ */
+final class SearchIndex {
+
+  private static final byte[] MAGIC = {'Y', 'A', 'P', 'X'};
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 56;
+  private static final int ENTRY_SIZE = 16;
+  private static final int SUFFIX_SIZE = 8;
+  private static final byte[] GEN_HEADER = "# gen ".getBytes(StandardCharsets.US_ASCII);
+  private static final int HEAD_MAX = 32; // snapshot bytes that hold its generation
+
+  private final long generation;
+  private final int taskCount;
+  private final int tokenCount;
+  private final int suffixCount;
+  private final long snapshotSize;
+  private final ByteBuffer index;
+  private final boolean isText;
+  private final int dictionaryAt;
+  private final int tokensAt;
+  private final int postingsAt;
+  private final int suffixesAt;
+  private final byte[][] scratch = {new byte[64]};
+
+  private SearchIndex(ByteBuffer index, boolean isText) {
+    this.index = index;
+    this.isText = isText;
+    this.generation = index.getLong(8);
+    this.snapshotSize = index.getLong(16);
+    this.taskCount = index.getInt(24);
+    this.tokenCount = index.getInt(28);
+    this.suffixCount = index.getInt(40);
+    this.dictionaryAt = HEADER_SIZE + taskCount * 4;
+    this.tokensAt = dictionaryAt + tokenCount * ENTRY_SIZE;
+    this.postingsAt = tokensAt + index.getInt(32);
+    this.suffixesAt = postingsAt + index.getInt(36) * 4;
+  }
+
+  /** Returns the sidecar file used for the given snapshot. */
+  static Path fileFor(Path snapshotFile) {
+    return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".idx");
+  }
+
+  /**
+   * Reads the sidecar into memory and checks it against the snapshot now on disk. A sidecar that
+   * fails its CRC is deleted, so the next {@link #isCurrent} check has it rebuilt.
+   *
+   * @return the index, or null if either file is missing, or the sidecar was built from another
+   *     snapshot or is damaged
+   */
+  static SearchIndex open(Path sidecar, Path snapshotFile) throws IOException {
+    ByteBuffer index;
+    ByteBuffer head;
+    long snapshotSize;
+    try {
+      head = readHead(snapshotFile);
+      snapshotSize = Files.size(snapshotFile);
+      index = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+    if (!matches(index, head, snapshotSize)) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(index.duplicate().position(HEADER_SIZE));
+    if (crc.getValue() != index.getLong(48)) {
+      Files.deleteIfExists(sidecar); // torn; isCurrent only reads the header
+      return null;
+    }
+    return new SearchIndex(index, !hasMagic(head, BinaryTaskCodec.MAGIC));
+  }
+
+  /**
+   * Returns whether the sidecar was built from the snapshot now on disk and has the length its
+   * header promises. Only the header is read: the CRC was checked when the sidecar was written,
+   * and {@link #open} checks it again before trusting the contents.
+   */
+  static boolean isCurrent(Path sidecar, Path snapshotFile) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    try (FileChannel ch = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && ch.read(header) >= 0) {
+        // fill the header
+      }
+      if (header.hasRemaining() || ch.size() != HEADER_SIZE + bodySize(header)) {
+        return false;
+      }
+      return matches(header, readHead(snapshotFile), Files.size(snapshotFile));
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  /** Checks the sidecar's header against the start and size of a snapshot. */
+  private static boolean matches(ByteBuffer index, ByteBuffer snapshotHead, long snapshotSize) {
+    if (index.capacity() < HEADER_SIZE || !hasMagic(index, MAGIC) || index.get(4) != VERSION) {
+      return false;
+    }
+    return index.getLong(8) == generationOf(snapshotHead) && index.getLong(16) == snapshotSize;
+  }
+
+  /** Returns the length of everything after the header, as the header describes it. */
+  private static long bodySize(ByteBuffer header) {
+    return header.getInt(24) * 4L + header.getInt(28) * (long) ENTRY_SIZE + header.getInt(32)
+        + header.getInt(36) * 4L + header.getInt(40) * (long) SUFFIX_SIZE;
+  }
+
+  private static ByteBuffer readHead(Path snapshotFile) throws IOException {
+    try (InputStream in = Files.newInputStream(snapshotFile)) {
+      return ByteBuffer.wrap(in.readNBytes(HEAD_MAX));
+    }
+  }
+
+  /**
+   * Returns the generation a snapshot starts with: from the binary header, or from a text
+   * snapshot's "# gen N" line; 0 for a text snapshot without one, as {@link Storage} reads it.
+   */
+  private static long generationOf(ByteBuffer head) {
+    if (hasMagic(head, BinaryTaskCodec.MAGIC)) {
+      return head.capacity() < BinaryTaskCodec.MAGIC.length + 9
+          ? -1
+          : head.getLong(BinaryTaskCodec.MAGIC.length + 1);
+    }
+    if (!hasMagic(head, GEN_HEADER)) {
+      return 0;
+    }
+    long generation = 0;
+    for (int i = GEN_HEADER.length; i < Math.min(head.capacity(), HEAD_MAX); i++) {
+      int digit = head.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return generation;
+      }
+      generation = generation * 10 + digit;
+    }
+    return -1; // no end to the number in sight; do not trust it
+  }
+
+  /**
+   * Returns whether the snapshot on disk is still the one this index was built from; a save
+   * replaces the file, so the index and the records read from it may no longer go with the
+   * journal.
+   */
+  boolean isStillCurrent(Path snapshotFile) throws IOException {
+    try {
+      return generationOf(readHead(snapshotFile)) == generation
+          && Files.size(snapshotFile) == snapshotSize;
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  /** Returns whether an open snapshot is the one this index was built from. */
+  boolean isFor(FileChannel snapshot) throws IOException {
+    ByteBuffer head = ByteBuffer.allocate((int) Math.min(HEAD_MAX, snapshot.size()));
+    while (head.hasRemaining() && snapshot.read(head, head.position()) >= 0) {
+      // fill the head
+    }
+    return snapshot.size() == snapshotSize && generationOf(head.flip()) == generation;
+  }
+
+  /** Generation of the snapshot this index was built from. */
+  long generation() {
+    return generation;
+  }
+
+  /** Number of tasks in the snapshot. */
+  int taskCount() {
+    return taskCount;
+  }
+
+  /**
+   * Returns the ordinals of snapshot tasks whose names might contain {@code needle}: those with a
+   * token containing the needle's longest token. A binary search of the suffixes finds those
+   * tokens, so only the postings of the tokens that match are read.
+   *
+   * @param needle lowercased, trimmed search term
+   * @return candidate ordinals, or null if the needle has no letters or digits to look up
+   */
+  BitSet candidates(String needle) {
+    String piece = null;
+    for (String token : tokens(needle)) {
+      if (piece == null || token.length() > piece.length()) {
+        piece = token;
+      }
+    }
+    if (piece == null) {
+      return null;
+    }
+    byte[] p = piece.getBytes(StandardCharsets.UTF_8);
+    int lo = 0;
+    int hi = suffixCount;
+    while (lo < hi) { // first suffix not before p
+      int mid = (lo + hi) >>> 1;
+      if (compareSuffix(mid, p) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    BitSet seen = new BitSet(tokenCount);
+    BitSet out = new BitSet(taskCount);
+    for (int i = lo; i < suffixCount && compareSuffix(i, p) == 0; i++) {
+      int token = index.getInt(suffixesAt + i * SUFFIX_SIZE);
+      if (seen.get(token)) {
+        continue; // the piece occurs twice in this token
+      }
+      seen.set(token);
+      int entry = dictionaryAt + token * ENTRY_SIZE;
+      int postings = postingsAt + index.getInt(entry + 8) * 4;
+      for (int k = index.getInt(entry + 12) - 1; k >= 0; k--) {
+        out.set(index.getInt(postings + k * 4));
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Decodes one snapshot task, reading only its record: from its offset to the next one's.
+   *
+   * @param snapshot the snapshot, checked with {@link #isFor}
+   */
+  Task read(FileChannel snapshot, int ordinal) throws IOException {
+    int offset = index.getInt(HEADER_SIZE + ordinal * 4);
+    long end = ordinal + 1 < taskCount ? index.getInt(HEADER_SIZE + ordinal * 4 + 4) : snapshotSize;
+    ByteBuffer record = ByteBuffer.allocate((int) (end - offset));
+    while (record.hasRemaining()
+        && snapshot.read(record, offset + record.position()) >= 0) {
+      // fill the record
+    }
+    byte[] bytes = record.array();
+    int length = record.position();
+    if (isText) {
+      int eol = 0;
+      while (eol < length && bytes[eol] != '\n') {
+        eol++;
+      }
+      return TaskCodec.parse(new String(bytes, 0, eol, StandardCharsets.UTF_8).strip());
+    }
+    return BinaryTaskCodec.read(
+        new DataInputStream(new ByteArrayInputStream(bytes, 0, length)), scratch);
+  }
+
+  /**
+   * Builds the index for a snapshot and writes it through a temporary file, replacing any older
+   * one.
+   *
+   * @return false, writing nothing, if the snapshot is missing or damaged
+   */
+  static boolean build(Path snapshotFile, Path sidecar) throws IOException {
+    if (!Files.exists(snapshotFile) || Files.size(snapshotFile) > Integer.MAX_VALUE) {
+      return false;
+    }
+    long size = Files.size(snapshotFile);
+    byte[] head;
+    try (InputStream in = Files.newInputStream(snapshotFile)) {
+      head = in.readNBytes(HEAD_MAX);
+    }
+    long generation = generationOf(ByteBuffer.wrap(head));
+    Postings tasks = new Postings();
+    boolean isRead = hasMagic(ByteBuffer.wrap(head), BinaryTaskCodec.MAGIC)
+        ? readBinary(snapshotFile, tasks)
+        : readText(snapshotFile, tasks);
+    if (generation < 0 || !isRead) {
+      return false; // a damaged snapshot gets no index; loading it has its own fallbacks
+    }
+    int[] offsets = Arrays.copyOf(tasks.offsets, tasks.count);
+    TreeMap<String, int[]> postings = tasks.byToken;
+
+    ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream body = new ByteArrayOutputStream(offsets.length * 8);
+    DataOutputStream out = new DataOutputStream(body);
+    for (int offset : offsets) {
+      out.writeInt(offset);
+    }
+    int postingCount = 0;
+    for (Map.Entry<String, int[]> e : postings.entrySet()) {
+      byte[] token = e.getKey().getBytes(StandardCharsets.UTF_8);
+      out.writeInt(tokenBytes.size());
+      out.writeInt(token.length);
+      out.writeInt(postingCount);
+      out.writeInt(e.getValue()[0]);
+      tokenBytes.write(token);
+      postingCount += e.getValue()[0];
+    }
+    tokenBytes.writeTo(out);
+    for (int[] list : postings.values()) {
+      for (int k = 1; k <= list[0]; k++) {
+        out.writeInt(list[k]);
+      }
+    }
+    long[] suffixes = sortedSuffixes(postings.keySet());
+    for (long suffix : suffixes) {
+      out.writeLong(suffix); // token in the high half, offset in the low half
+    }
+    out.flush();
+
+    byte[] bytes = body.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.put(MAGIC).put((byte) VERSION).put(new byte[3]);
+    header.putLong(generation).putLong(size);
+    header.putInt(offsets.length).putInt(postings.size()).putInt(tokenBytes.size())
+        .putInt(postingCount).putInt(suffixes.length).putInt(0).putLong(crc.getValue());
+
+    Path tmp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ch.write(new ByteBuffer[] {header.flip(), ByteBuffer.wrap(bytes)});
+    }
+    try {
+      Files.move(tmp, sidecar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return true;
+  }
+
+  /** Adds each record of a binary snapshot to {@code tasks}; false if one is damaged. */
+  private static boolean readBinary(Path snapshotFile, Postings tasks) throws IOException {
+    try (CountingInput counted = new CountingInput(
+            new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16));
+        DataInputStream in = new DataInputStream(counted)) {
+      in.skipNBytes(BinaryTaskCodec.MAGIC.length);
+      int version = in.readUnsignedByte();
+      if (version < 1 || version > BinaryTaskCodec.VERSION) {
+        return false;
+      }
+      in.readLong(); // generation, already known from the head
+      int count = in.readInt();
+      byte[][] scratch = {new byte[64]};
+      for (int i = 0; i < count; i++) {
+        int offset = (int) counted.count;
+        Task t = BinaryTaskCodec.read(in, scratch);
+        if (t == null) {
+          return false;
+        }
+        tasks.add(offset, t);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds each task line of a text snapshot to {@code tasks}, skipping the lines {@link Storage}
+   * skips when loading, so ordinals match its list.
+   */
+  private static boolean readText(Path snapshotFile, Postings tasks) throws IOException {
+    try (InputStream in = Files.newInputStream(snapshotFile)) {
+      byte[] chunk = new byte[1 << 16];
+      ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+      int lineStart = 0;
+      int at = 0;
+      for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+        for (int i = 0; i < n; i++, at++) {
+          if (chunk[i] != '\n') {
+            line.write(chunk[i]);
+            continue;
+          }
+          addLine(line, lineStart, tasks);
+          line.reset();
+          lineStart = at + 1;
+        }
+      }
+      addLine(line, lineStart, tasks);
+    }
+    return true;
+  }
+
+  private static void addLine(ByteArrayOutputStream bytes, int offset, Postings tasks) {
+    String line = bytes.toString(StandardCharsets.UTF_8).strip();
+    Task t = TaskCodec.isSkippable(line) ? null : TaskCodec.parse(line);
+    if (t != null) {
+      tasks.add(offset, t); // corrupted lines are skipped, as when loading
+    }
+  }
+
+  /**
+   * Lists every suffix of every token, as the token's number in the high half and the byte
+   * offset in the low half, sorted by the suffixes' bytes. Offsets inside a multi-byte character
+   * are left out, as no search term can start there.
+   */
+  private static long[] sortedSuffixes(Collection<String> tokens) {
+    byte[][] bytes = new byte[tokens.size()][];
+    int count = 0;
+    int t = 0;
+    for (String token : tokens) {
+      bytes[t] = token.getBytes(StandardCharsets.UTF_8);
+      for (byte b : bytes[t]) {
+        if ((b & 0xC0) != 0x80) {
+          count++;
+        }
+      }
+      t++;
+    }
+    Long[] suffixes = new Long[count];
+    int n = 0;
+    for (t = 0; t < bytes.length; t++) {
+      for (int i = 0; i < bytes[t].length; i++) {
+        if ((bytes[t][i] & 0xC0) != 0x80) {
+          suffixes[n++] = (long) t << 32 | i;
+        }
+      }
+    }
+    Arrays.sort(suffixes, (a, b) -> {
+      byte[] x = bytes[(int) (a >>> 32)];
+      byte[] y = bytes[(int) (b >>> 32)];
+      return Arrays.compareUnsigned(x, (int) (long) a, x.length, y, (int) (long) b, y.length);
+    });
+    long[] out = new long[count];
+    for (int i = 0; i < count; i++) {
+      out[i] = suffixes[i];
+    }
+    return out;
+  }
+
+  private static boolean hasMagic(ByteBuffer b, byte[] magic) {
+    if (b.capacity() < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (b.get(i) != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares the start of suffix {@code i} with {@code piece}, byte by unsigned byte.
+   *
+   * @return 0 if the suffix starts with the piece, else its order relative to the piece
+   */
+  private int compareSuffix(int i, byte[] piece) {
+    int at = suffixesAt + i * SUFFIX_SIZE;
+    int entry = dictionaryAt + index.getInt(at) * ENTRY_SIZE;
+    int from = index.getInt(at + 4);
+    int start = tokensAt + index.getInt(entry) + from;
+    int length = index.getInt(entry + 4) - from;
+    for (int j = 0; j < piece.length; j++) {
+      if (j == length) {
+        return -1; // a proper prefix of the piece comes before it
+      }
+      int c = (index.get(start + j) & 0xFF) - (piece[j] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private static List<String> tokens(String lower) {
+    List<String> out = new ArrayList<>(4);
+    int start = -1;
+    for (int i = 0; i <= lower.length(); i++) {
+      boolean isTokenChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+      if (isTokenChar && start < 0) {
+        start = i;
+      } else if (!isTokenChar && start >= 0) {
+        out.add(lower.substring(start, i));
+        start = -1;
+      }
+    }
+    return out;
+  }
+
+  /** Collects where each task starts and the ordinals of the tasks each token occurs in. */
+  private static final class Postings {
+    int[] offsets = new int[1024];
+    int count;
+    final TreeMap<String, int[]> byToken = new TreeMap<>(); // token -> {n, ordinal 1..n, spare}
+
+    void add(int offset, Task t) {
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      int ordinal = count++;
+      offsets[ordinal] = offset;
+      for (String token : tokens(t.getName().toLowerCase())) {
+        int[] list = byToken.computeIfAbsent(token, k -> new int[4]);
+        int n = list[0];
+        if (n > 0 && list[n] == ordinal) {
+          continue; // the token appears twice in this name
+        }
+        if (n + 1 == list.length) {
+          list = Arrays.copyOf(list, list.length * 2);
+          byToken.put(token, list);
+        }
+        list[n + 1] = ordinal;
+        list[0] = n + 1;
+      }
+    }
+  }
+
+  /** Counts the bytes read through it, to note where each snapshot record starts. */
+  private static final class CountingInput extends FilterInputStream {
+    long count;
+
+    CountingInput(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
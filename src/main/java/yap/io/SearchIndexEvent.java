@@ -0,0 +1,22 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for {@link Storage#writeSearchIndex()} rebuilding a stale sidecar. */
+@Name("yap.SearchIndexBuild")
+@Label("Build Search Index")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class SearchIndexEvent extends jdk.jfr.Event {
+
+  @Label("File")
+  String file;
+
+  @Label("Bytes Written")
+  @DataAmount
+  long bytes;
+}
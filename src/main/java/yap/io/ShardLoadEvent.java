@@ -0,0 +1,30 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for {@link Storage#loadCold}: reading cold month shards on demand. */
+@Name("yap.ShardLoad")
+@Label("Load Cold Shards")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class ShardLoadEvent extends jdk.jfr.Event {
+
+  @Label("From")
+  @Description("First month asked for, or empty for the oldest")
+  String from;
+
+  @Label("To")
+  @Description("Last month asked for, or empty for the newest")
+  String to;
+
+  @Label("Task Count")
+  int taskCount;
+
+  @Label("Still Cold")
+  @Description("Tasks left in shards afterwards")
+  int remaining;
+}
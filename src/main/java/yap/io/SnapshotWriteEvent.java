@@ -0,0 +1,24 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Flight Recorder event for writing one snapshot to disk, on whichever thread does it. */
+@Name("yap.SnapshotWrite")
+@Label("Write Snapshot")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class SnapshotWriteEvent extends jdk.jfr.Event {
+
+  @Label("Bytes Written")
+  @DataAmount
+  long bytes;
+
+  @Label("Move Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long moveTime;
+}
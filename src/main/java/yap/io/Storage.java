@@ -1,172 +1,1149 @@
 package yap.io;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
+import yap.core.Metrics;
 import yap.core.YapException;
-import yap.task.Deadlines;
-import yap.task.Events;
+import yap.task.ColdTask;
 import yap.task.Task;
-import yap.task.ToDos;
 
 /**
- * Saves and loads tasks from "./data/yap.txt". Format (human-friendly, stable to parse): T | 1 |
+ * Saves and loads tasks from "./data/tasks.txt". Format (human-friendly, stable to parse): T | 1 |
  * read book D | 0 | return book | 2019-12-02 E | 0 | project meeting | 2019-12-02 | 1800 | 2000
  * Notes: - Relative, OS-independent path. - Creates parent directory if needed. - Skips blank
  * lines, comment lines (#...), and corrupted lines.
+ *
+ * <p>Journal: mutations are appended as one record each to "&lt;file&gt;.log" instead of rewriting
+ * the snapshot, so a single add/delete/complete/edit costs the same no matter how long the list is.
+ * Records are "+ | &lt;task&gt;" (append), "- | &lt;index&gt;" (remove), "= | &lt;index&gt; |
+ * &lt;task&gt;" (replace) and "^ | &lt;index&gt; | &lt;task&gt;" (insert, from undo), with 1-based
+ * indices. {@link #load()} replays the journal on top of the snapshot; {@link #save(List)} folds
+ * everything into a fresh snapshot and drops the journal. The snapshot carries a "# gen N" header
+ * and the journal a "# base N" header, so a journal left behind by a crash between the two steps is
+ * recognised as stale and never replayed twice.
+ *
+ * <p>Formats: the snapshot is either the text format above or the compact binary format described
+ * in {@link BinaryTaskCodec}; {@link #load()} recognises either by its first bytes. Text is the
+ * default, so the save file stays readable and editable by hand. Only a storage explicitly set to
+ * {@link Format#BINARY} rewrites a text snapshot as binary, right after loading it. Journal records
+ * are always text.
+ *
+ * <p>Background mode: with a positive commit window, writes are handed to a single writer thread
+ * (see {@link GroupCommitWriter}) that merges everything arriving within the window into one
+ * write. Call {@link #flush()} before exiting so nothing queued is lost.
+ *
+ * <p>Cold shards: with {@link #setColdBefore(YearMonth)}, deadlines and events dated before that
+ * month are filed by month into "&lt;file&gt;.shards/" (see {@link ColdShards}) when {@link
+ * #load()} finds them, and a {@link ColdTask} keeps each one's slot in the list and in the main
+ * file, so no task changes its number. {@link #loadCold} reads the shards a query needs and hands
+ * back the real tasks for the caller to put in those slots. The main file goes on referring to the
+ * shards: a loaded task is saved as its reference again unless it was changed, and an edit
+ * journals the whole task, whose next load files it into its month anew. So a shard is rewritten
+ * only when tasks age into its month, or when a load finds records in it that the main file no
+ * longer refers to, which it drops; loading one writes nothing. Loading with cold shards off
+ * brings any that are left back into the main file, and the next load deletes the shards.
+ *
+ * <p>Archive: with {@link #setArchiveBefore(LocalDate)}, {@link #load()} moves tasks done before
+ * that day into the compressed, append-only {@link Archive} and saves the rest, so startup and
+ * saves only ever handle tasks that are open or recently done. Done tasks saved without a done day
+ * are given the day they are first loaded. The archive is read only by {@link
+ * #findArchived(String)} and {@link #readArchived(int[])}.
+ *
+ * <p>Search index: with {@link #enableSearchIndex()}, a background thread keeps a {@link
+ * SearchIndex} sidecar ("&lt;file&gt;.idx") in step with the snapshot, rebuilding it after a
+ * load that finds it stale and after every snapshot write. {@link #findWithoutLoading(String)}
+ * reads it to answer a search before, or instead of, loading the list.
+ *
+ * <p>Loads, saves, snapshot writes and journal appends each emit a Flight Recorder event ({@code
+ * yap.StorageLoad} and so on); see {@code config/jfr/yap.jfc}.
  */
 public final class Storage {
 
-  private static final DateTimeFormatter TIME_IO = DateTimeFormatter.ofPattern("HHmm");
+  /** On-disk layout of the snapshot file. */
+  public enum Format {
+    TEXT,
+    BINARY
+  }
+
+  /** Journal size (bytes) after which {@link #needsCompaction()} asks for a fresh snapshot. */
+  public static final long DEFAULT_COMPACT_THRESHOLD = 64 * 1024;
+
+  private static final String GEN_HEADER = "# gen ";
+  private static final String BASE_HEADER = "# base ";
+
   private final Path file;
+  private final Path journal;
+  private final long compactThreshold;
+  private final GroupCommitWriter writer; // null when writes happen on the caller's thread
+  private final Format format;
+
+  private long generation = 0; // generation of the snapshot currently on disk
+  private long journalBytes = 0; // 0 means no journal file for the current generation
+  private Metrics metrics; // null when nobody is measuring
+  private YearMonth coldBefore; // null when nothing more moves to cold shards
+  private final ColdShards cold;
+  private final TreeMap<YearMonth, List<ColdTask>> waiting = new TreeMap<>(); // not read yet
+  private final Map<Task, Loaded> fromShards = new IdentityHashMap<>(); // read by loadCold
+  private final Archive archive;
+  private LocalDate archiveBefore; // null when nothing is archived on load
+  private final Path searchIndex;
+  private SearchIndex openIndex; // kept by findWithoutLoading while its generation is on disk
+  private final AtomicBoolean isIndexQueued = new AtomicBoolean();
+  private ExecutorService indexer; // null until enableSearchIndex()
 
   public Storage(String relativePath) {
+    this(relativePath, DEFAULT_COMPACT_THRESHOLD);
+  }
+
+  /**
+   * Creates a storage whose journal is compacted once it grows past the given size.
+   *
+   * @param relativePath snapshot file, e.g. "data/tasks.txt"; the journal lives next to it
+   * @param compactThresholdBytes journal size that triggers compaction
+   */
+  public Storage(String relativePath, long compactThresholdBytes) {
+    this(relativePath, compactThresholdBytes, 0);
+  }
+
+  /**
+   * Creates a storage that, for a positive {@code commitWindowMillis}, writes on a background
+   * thread and merges all writes arriving within that window. Snapshots are written as text.
+   *
+   * @param relativePath snapshot file, e.g. "data/tasks.txt"; the journal lives next to it
+   * @param compactThresholdBytes journal size that triggers compaction
+   * @param commitWindowMillis group-commit window; 0 writes synchronously on the caller's thread
+   */
+  public Storage(String relativePath, long compactThresholdBytes, long commitWindowMillis) {
+    this(relativePath, compactThresholdBytes, commitWindowMillis, Format.TEXT);
+  }
+
+  /**
+   * Creates a storage that writes snapshots in the given format.
+   *
+   * @param relativePath snapshot file, e.g. "data/tasks.txt"; the journal lives next to it
+   * @param compactThresholdBytes journal size that triggers compaction
+   * @param commitWindowMillis group-commit window; 0 writes synchronously on the caller's thread
+   * @param format format used for snapshots written by {@link #save(List)}
+   */
+  public Storage(
+      String relativePath, long compactThresholdBytes, long commitWindowMillis, Format format) {
+    assert format != null : "Format must not be null";
+    assert compactThresholdBytes > 0 : "Compaction threshold must be positive";
+    assert commitWindowMillis >= 0 : "Commit window must not be negative";
     this.file = Paths.get(relativePath);
+    this.journal = file.resolveSibling(file.getFileName() + ".log");
+    this.compactThreshold = compactThresholdBytes;
+    this.format = format;
+    this.cold = new ColdShards(ColdShards.dirFor(file));
+    this.archive = new Archive(Archive.fileFor(file));
+    this.searchIndex = SearchIndex.fileFor(file);
+    this.writer = commitWindowMillis == 0
+        ? null
+        : new GroupCommitWriter(sink(), commitWindowMillis, "yap-storage-writer");
   }
 
-  /** Loads tasks from disk. Returns empty list if file missing. */
-  public List<Task> load() throws YapException {
-    List<Task> out = new ArrayList<>();
+  /**
+   * Reports the duration of every load, save and journal append, and the bytes written, to {@code
+   * metrics}. In background mode a save or append is timed up to its hand-off to the writer, which
+   * is what the caller waits for.
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Keeps deadlines and events dated before {@code month} in cold shards rather than in the main
+   * file. Call before {@link #load()}, which moves any such tasks out.
+   *
+   * @param month first month kept in the main file; null keeps everything there, bringing back
+   *     any tasks still in shards
+   */
+  public void setColdBefore(YearMonth month) {
+    this.coldBefore = month;
+  }
+
+  /**
+   * Archives tasks done before {@code day}. Call before {@link #load()}, which moves them; it is
+   * the only step that archives, so saves and compactions keep every done task in the main file.
+   *
+   * @param day first done day kept in the main file; null archives nothing
+   */
+  public void setArchiveBefore(LocalDate day) {
+    this.archiveBefore = day;
+  }
+
+  /**
+   * Keeps the search index sidecar up to date from now on, rebuilding it on a background daemon
+   * thread whenever a load finds it stale or a new snapshot is written.
+   */
+  public void enableSearchIndex() {
+    if (indexer == null) {
+      indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "yap-search-index");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+  }
+
+  /** Queues a rebuild check unless one is already waiting; it sees the latest snapshot anyway. */
+  private void scheduleSearchIndex() {
+    if (indexer == null || !isIndexQueued.compareAndSet(false, true)) {
+      return;
+    }
+    indexer.execute(() -> {
+      isIndexQueued.set(false);
+      try {
+        writeSearchIndex();
+      } catch (YapException ex) {
+        // Only a shortcut: without it, searches load the list as before.
+      }
+    });
+  }
+
+  /** Rebuilds the search index sidecar unless it already matches the snapshot on disk. */
+  public void writeSearchIndex() throws YapException {
+    SearchIndexEvent event = new SearchIndexEvent();
+    event.begin();
     try {
-      if (!Files.exists(file)) {
-        return out; // first run, nothing to load
+      if (SearchIndex.isCurrent(searchIndex, file) || !SearchIndex.build(file, searchIndex)) {
+        return;
       }
-      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
-        String raw = line.trim();
-        if (raw.isEmpty() || raw.startsWith("#")) {
-          continue;
+    } catch (IOException ex) {
+      throw new YapException("Failed to write search index for " + file, ex);
+    }
+    if (event.shouldCommit()) {
+      event.file = searchIndex.toString();
+      event.bytes = sizeOrZero(searchIndex);
+      event.commit();
+    }
+  }
+
+  /**
+   * Answers a keyword search from the search index sidecar and the journal, without loading the
+   * list. Only the journal and the snapshot records whose tokens can match are parsed; the rest
+   * of the list is replayed as ordinals. Matches are those {@code find} lists from the saved list,
+   * in the same order.
+   *
+   * @param keyword search term, matched case-insensitively anywhere in a name
+   * @return the matching tasks in list order, or null if the sidecar cannot answer (missing or
+   *     stale, or tasks in cold shards), in which case load the list instead
+   */
+  public List<Task> findWithoutLoading(String keyword) throws YapException {
+    String needle = keyword.trim().toLowerCase();
+    try {
+      ColdShards shards = new ColdShards(ColdShards.dirFor(file)); // leaves this.cold as it is
+      shards.scan();
+      if (shards.taskCount() > 0) {
+        return null;
+      }
+      SearchIndex index = openIndex;
+      if (index == null || !index.isStillCurrent(file)) {
+        index = openIndex = SearchIndex.open(searchIndex, file);
+      }
+      if (index == null) {
+        return null;
+      }
+      try (FileChannel snapshot = FileChannel.open(file, StandardOpenOption.READ)) {
+        if (!index.isFor(snapshot)) {
+          return null; // replaced since the check above
         }
-        Task t = deserialize(raw);
-        if (t != null) {
-          out.add(t); // corrupted lines are skipped
+        OrdinalList list = new OrdinalList(index.taskCount());
+        if (Files.exists(journal)) {
+          replayRecords(list, index.generation(), t -> t);
+        }
+        if (!index.isStillCurrent(file)) {
+          return null; // saved meanwhile, e.g. by a load running alongside
+        }
+        BitSet candidates = index.candidates(needle); // null: no token to look up, check them all
+        List<Task> hits = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+          int code = list.code(i);
+          if (code >= 0 && candidates != null && !candidates.get(code)) {
+            continue;
+          }
+          Task t = code >= 0 ? index.read(snapshot, code) : list.journaled(code);
+          if (t != null && t.getName().toLowerCase().contains(needle)) {
+            hits.add(t);
+          }
+        }
+        return hits;
+      }
+    } catch (NoSuchFileException ex) {
+      return null; // replaced or deleted between the checks
+    } catch (IOException ex) {
+      throw new YapException("Failed to search " + file, ex);
+    }
+  }
+
+  private GroupCommitWriter.Sink sink() {
+    return new GroupCommitWriter.Sink() {
+      @Override
+      public void writeSnapshot(byte[] content) throws IOException {
+        Storage.this.writeSnapshot(content);
+      }
+
+      @Override
+      public void appendJournal(byte[] records) throws IOException {
+        Storage.this.appendJournal(records);
+      }
+    };
+  }
+
+  /**
+   * Loads tasks from disk (snapshot plus journal). Returns empty list if file missing. A text
+   * snapshot is migrated to the binary format when this storage writes binary. With cold shards
+   * on, tasks that have aged past the cutoff are filed into their shards and a {@link ColdTask}
+   * takes each one's slot in the result; the shards themselves are not read beyond their headers.
+   */
+  public List<Task> load() throws YapException {
+    StorageLoadEvent event = new StorageLoadEvent();
+    event.begin();
+    long start = System.nanoTime();
+    List<Task> out = new ArrayList<>();
+    generation = 0;
+    waiting.clear();
+    fromShards.clear();
+    boolean isMigrating = false;
+    try {
+      cold.scan();
+      if (Files.exists(file)) {
+        if (isBinary()) {
+          loadBinary(out);
+        } else {
+          loadText(out);
+          isMigrating = format == Format.BINARY;
         }
       }
     } catch (IOException ex) {
       throw new YapException("Failed to read save file: " + file, ex);
     }
+    replayJournal(out);
+    boolean isStamped = archiveBefore != null && stampDoneDays(out);
+    int archived = archiveBefore == null ? 0 : archiveDone(out);
+    for (Task t : out) {
+      if (t instanceof ColdTask) {
+        ColdTask c = (ColdTask) t;
+        waiting.computeIfAbsent(c.getMonth(), m -> new ArrayList<>()).add(c);
+      }
+    }
+    try {
+      cold.dropUnreferenced(waiting); // the list as loaded is all that can refer to a record
+    } catch (IOException ex) {
+      throw new YapException("Failed to write cold shards for " + file, ex);
+    }
+    int moved = coldBefore == null ? 0 : moveColdOut(out);
+    boolean isWarmed = coldBefore == null && !waiting.isEmpty() && bringBackCold(out);
+    if (isMigrating || isStamped || archived > 0 || moved > 0 || isWarmed) {
+      save(out);
+    }
+    if (metrics != null) {
+      metrics.recordLoad(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.file = file.toString();
+      event.taskCount = out.size();
+      event.bytes = sizeOrZero(file) + sizeOrZero(journal);
+      event.migrated = isMigrating;
+      event.archived = archived;
+      event.movedToShards = moved;
+      event.commit();
+    }
+    scheduleSearchIndex();
     return out;
   }
 
-  /** Saves tasks to disk atomically. Creates parent directory if necessary. */
-  public void save(List<Task> tasks) throws YapException {
+  /** Gives today as the done day to done tasks saved without one; true if there were any. */
+  private static boolean stampDoneDays(List<Task> out) {
+    LocalDate today = LocalDate.now();
+    boolean isStamped = false;
+    for (Task t : out) {
+      if (t.isDone() && t.getDoneOn() == null) {
+        t.setDoneOn(today);
+        isStamped = true;
+      }
+    }
+    return isStamped;
+  }
+
+  /** Appends every task done before the cutoff to the archive and removes it from {@code out}. */
+  private int archiveDone(List<Task> out) throws YapException {
+    List<Task> kept = new ArrayList<>(out.size());
+    List<Task> old = new ArrayList<>();
+    for (Task t : out) {
+      (t.isDone() && t.getDoneOn().isBefore(archiveBefore) ? old : kept).add(t);
+    }
+    if (old.isEmpty()) {
+      return 0;
+    }
+    try {
+      archive.append(old);
+    } catch (IOException ex) {
+      throw new YapException("Failed to write archive for " + file, ex);
+    }
+    out.clear();
+    out.addAll(kept);
+    return old.size();
+  }
+
+  /**
+   * Searches the archive for tasks whose names contain {@code keyword}, decompressing as it reads.
+   *
+   * @return the matches still archived, in the order they were archived
+   */
+  public List<Archive.Entry> findArchived(String keyword) throws YapException {
+    try {
+      return archive.find(keyword);
+    } catch (IOException ex) {
+      throw new YapException("Failed to read archive for " + file, ex);
+    }
+  }
+
+  /**
+   * Reads archived entries by number without taking them out; call {@link #markRestored(int[])}
+   * once they are stored in the list.
+   *
+   * @return the entries still archived, in archive order; numbers not found are left out
+   */
+  public List<Archive.Entry> readArchived(int[] numbers) throws YapException {
+    try {
+      return archive.read(numbers);
+    } catch (IOException ex) {
+      throw new YapException("Failed to read archive for " + file, ex);
+    }
+  }
+
+  /** Marks archived entries as restored, so they are not found or restored again. */
+  public void markRestored(int[] numbers) throws YapException {
+    try {
+      archive.markRestored(numbers);
+    } catch (IOException ex) {
+      throw new YapException("Failed to write archive for " + file, ex);
+    }
+  }
+
+  /** Files every task dated before the cutoff into its shard, leaving a reference in its slot. */
+  private int moveColdOut(List<Task> out) throws YapException {
+    List<Integer> slots = new ArrayList<>();
+    List<Task> old = new ArrayList<>();
+    for (int i = 0; i < out.size(); i++) {
+      Task t = out.get(i);
+      YearMonth month = t instanceof ColdTask ? null : ColdShards.monthOf(t);
+      if (month != null && month.isBefore(coldBefore)) {
+        slots.add(i);
+        old.add(t);
+      }
+    }
+    if (old.isEmpty()) {
+      return 0;
+    }
+    List<ColdTask> refs;
     try {
-      Path parent = file.getParent();
-      if (parent != null) {
-        Files.createDirectories(parent);
+      refs = cold.moveOut(old);
+    } catch (IOException ex) {
+      throw new YapException("Failed to write cold shards for " + file, ex);
+    }
+    for (int i = 0; i < refs.size(); i++) {
+      ColdTask ref = refs.get(i);
+      out.set(slots.get(i), ref);
+      waiting.computeIfAbsent(ref.getMonth(), m -> new ArrayList<>()).add(ref);
+    }
+    return old.size();
+  }
+
+  /**
+   * Puts the tasks of every shard still referred to back into their slots, for a load with cold
+   * shards off. The shard files stay, as the main file on disk refers to them until it is saved.
+   *
+   * @return true if any task came back
+   */
+  private boolean bringBackCold(List<Task> out) throws YapException {
+    Map<ColdTask, Task> loaded = read(new ArrayList<>(waiting.keySet()));
+    fromShards.clear(); // saved in full from now on
+    for (int i = 0; i < out.size(); i++) {
+      Task t = loaded.get(out.get(i));
+      if (t != null) {
+        out.set(i, t);
+      }
+    }
+    return !loaded.isEmpty();
+  }
+
+  /** Number of {@link ColdTask} references whose shards have not been read yet. */
+  public int coldTaskCount() {
+    int n = 0;
+    for (List<ColdTask> refs : waiting.values()) {
+      n += refs.size();
+    }
+    return n;
+  }
+
+  /**
+   * Reads the cold shards for the months from {@code from} to {@code to} that the list still
+   * refers to. Nothing is written; the caller puts each task in its reference's slot.
+   *
+   * @param from earliest date wanted, or null for no lower bound
+   * @param to latest date wanted, or null for no upper bound
+   * @param isOpenOnly skip months in which every task is done
+   * @return the task for each reference read, oldest month first; a reference whose record cannot
+   *     be read is left out
+   */
+  public Map<ColdTask, Task> loadCold(LocalDate from, LocalDate to, boolean isOpenOnly)
+      throws YapException {
+    SortedMap<YearMonth, List<ColdTask>> range = waiting;
+    if (from != null) {
+      range = range.tailMap(YearMonth.from(from));
+    }
+    if (to != null) {
+      range = range.headMap(YearMonth.from(to).plusMonths(1));
+    }
+    List<YearMonth> months = new ArrayList<>();
+    for (YearMonth month : range.keySet()) {
+      if (!isOpenOnly || cold.hasOpen(month)) {
+        months.add(month);
+      }
+    }
+    return loadCold(months);
+  }
+
+  /** Reads the given months' cold shards; see {@link #loadCold(LocalDate, LocalDate, boolean)}. */
+  public Map<ColdTask, Task> loadCold(Collection<YearMonth> months) throws YapException {
+    ShardLoadEvent event = new ShardLoadEvent();
+    event.begin();
+    Map<ColdTask, Task> loaded = read(months);
+    if (event.shouldCommit()) {
+      event.from = months.isEmpty() ? "" : Collections.min(months).toString();
+      event.to = months.isEmpty() ? "" : Collections.max(months).toString();
+      event.taskCount = loaded.size();
+      event.remaining = coldTaskCount();
+      event.commit();
+    }
+    return loaded;
+  }
+
+  private Map<ColdTask, Task> read(Collection<YearMonth> months) throws YapException {
+    Map<ColdTask, Task> loaded = new LinkedHashMap<>();
+    for (YearMonth month : new TreeSet<>(months)) {
+      List<ColdTask> refs = waiting.remove(month);
+      if (refs == null) {
+        continue;
+      }
+      List<Task> records;
+      try {
+        records = cold.read(month);
+      } catch (IOException ex) {
+        waiting.put(month, refs);
+        throw new YapException("Failed to read cold shards for " + file, ex);
+      }
+      for (ColdTask ref : refs) {
+        Task t = ref.getOrdinal() < records.size() ? records.get(ref.getOrdinal()) : null;
+        if (t != null) {
+          records.set(ref.getOrdinal(), null); // each record fills one slot
+          loaded.put(ref, t);
+          fromShards.put(t, new Loaded(ref, TaskCodec.serialize(t)));
+        }
       }
+    }
+    return loaded;
+  }
+
+  /** Swaps each task read from a shard and still as it was read for its reference. */
+  private List<Task> withColdReferences(List<Task> tasks) {
+    if (fromShards.isEmpty()) {
+      return tasks;
+    }
+    List<Task> out = new ArrayList<>(tasks.size());
+    for (Task t : tasks) {
+      Loaded l = fromShards.get(t);
+      out.add(l != null && l.record.equals(TaskCodec.serialize(t)) ? l.ref : t);
+    }
+    return out;
+  }
+
+  private boolean isBinary() throws IOException {
+    byte[] head = new byte[BinaryTaskCodec.MAGIC.length];
+    try (InputStream in = Files.newInputStream(file)) {
+      return in.readNBytes(head, 0, head.length) == head.length
+          && Arrays.equals(head, BinaryTaskCodec.MAGIC);
+    }
+  }
 
-      Path tmp = (parent == null ? Paths.get(".") : parent).resolve(file.getFileName() + ".tmp");
+  private void loadText(List<Task> out) throws IOException {
+    // Streamed line by line: only one line and the tasks built so far are ever on the heap.
+    try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        if (TaskCodec.isSkippable(line)) {
+          if (line.startsWith(GEN_HEADER)) {
+            generation = parseLongOr(line.substring(GEN_HEADER.length()), 0);
+          }
+          continue;
+        }
+        Task t = TaskCodec.parse(line);
+        if (t != null) {
+          out.add(t); // corrupted lines are skipped
+        }
+      }
+    }
+  }
 
-      try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
-        for (Task t : tasks) {
-          w.write(serialize(t));
-          w.newLine();
+  private void loadBinary(List<Task> out) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      in.skipNBytes(BinaryTaskCodec.MAGIC.length);
+      int version = in.readUnsignedByte();
+      if (version < 1 || version > BinaryTaskCodec.VERSION) {
+        throw new IOException("Unsupported save file version " + version);
+      }
+      generation = in.readLong();
+      int count = in.readInt();
+      byte[][] scratch = {new byte[64]};
+      for (int i = 0; i < count; i++) {
+        Task t = BinaryTaskCodec.read(in, scratch);
+        if (t == null) {
+          break; // corrupted record: nothing after it can be located
         }
+        out.add(t);
       }
+    } catch (EOFException ex) {
+      // truncated file: keep the tasks read so far, like skipped lines in the text format
+    }
+  }
 
+  /**
+   * Saves tasks to disk atomically as a new snapshot and discards the journal. Creates parent
+   * directory if necessary. In background mode the tasks are serialized here and written later by
+   * the writer thread.
+   */
+  public void save(List<Task> tasks) throws YapException {
+    StorageSaveEvent event = new StorageSaveEvent();
+    event.begin();
+    long start = System.nanoTime();
+    long nextGeneration = generation + 1;
+    byte[] content;
+    try {
+      List<Task> stored = withColdReferences(tasks);
+      content = format == Format.BINARY
+          ? encodeBinary(stored, nextGeneration)
+          : encodeText(stored, nextGeneration);
+    } catch (IOException ex) {
+      throw new YapException("Failed to encode tasks for " + file, ex);
+    }
+
+    long moveNanos = 0;
+    if (writer != null) {
+      writer.submitSnapshot(content);
+    } else {
       try {
-        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
-      } catch (AtomicMoveNotSupportedException e) {
-        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        moveNanos = writeSnapshot(content);
+      } catch (IOException ex) {
+        throw new YapException("Failed to write save file: " + file, ex);
       }
+    }
+    generation = nextGeneration;
+    journalBytes = 0;
+    if (metrics != null) {
+      metrics.recordSave(System.nanoTime() - start, content.length);
+    }
+    if (event.shouldCommit()) {
+      event.file = file.toString();
+      event.format = format.name();
+      event.taskCount = tasks.size();
+      event.bytes = content.length;
+      event.background = writer != null;
+      event.moveTime = moveNanos;
+      event.commit();
+    }
+  }
+
+  private static byte[] encodeText(List<Task> tasks, long generation) {
+    StringBuilder sb = new StringBuilder(64 + tasks.size() * 32);
+    sb.append(GEN_HEADER).append(generation).append(System.lineSeparator());
+    for (Task t : tasks) {
+      TaskCodec.appendTo(sb, t);
+      sb.append(System.lineSeparator());
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] encodeBinary(List<Task> tasks, long generation) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + tasks.size() * 24);
+    DataOutputStream out = new DataOutputStream(bytes);
+    BinaryTaskCodec.writeHeader(out, generation, tasks.size());
+    for (Task t : tasks) {
+      BinaryTaskCodec.write(out, t);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /** Blocks until every write handed to the background writer is on disk. No-op otherwise. */
+  public void flush() throws YapException {
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
+  /** Number of saves and journal appends that were merged into another write. */
+  public long coalescedSaves() {
+    return writer == null ? 0 : writer.coalescedCount();
+  }
+
+  /** Writes the snapshot through a temporary file and returns how long the rename took. */
+  private long writeSnapshot(byte[] content) throws IOException {
+    SnapshotWriteEvent event = new SnapshotWriteEvent();
+    event.begin();
+    Path parent = file.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+
+    Path tmp = (parent == null ? Paths.get(".") : parent).resolve(file.getFileName() + ".tmp");
+    Files.write(tmp, content);
+
+    long moveStart = System.nanoTime();
+    try {
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    long moveNanos = System.nanoTime() - moveStart;
+
+    // The old journal is now stale (its base header no longer matches), so a failure here is
+    // harmless; deleting it just keeps the directory tidy.
+    Files.deleteIfExists(journal);
+    scheduleSearchIndex();
+
+    if (event.shouldCommit()) {
+      event.bytes = content.length;
+      event.moveTime = moveNanos;
+      event.commit();
+    }
+    return moveNanos;
+  }
+
+  private static long sizeOrZero(Path p) {
+    try {
+      return Files.exists(p) ? Files.size(p) : 0;
     } catch (IOException ex) {
-      throw new YapException("Failed to write save file: " + file, ex);
+      return 0;
+    }
+  }
+
+  private void appendJournal(byte[] records) throws IOException {
+    Path parent = journal.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
     }
+    Files.write(journal, records, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
   }
 
   // ----------------------------------------------------------------------
-  // Serialization
+  // Journal
   // ----------------------------------------------------------------------
 
-  private static String serialize(Task t) {
-    String status = t.getStatus() ? "1" : "0";
-
-    if (t instanceof ToDos) {
-      return join("T", status, t.getName());
+  /** Journals a task appended to the end of the list. */
+  public void appendAdd(Task t) throws YapException {
+    appendRecord("+ | " + TaskCodec.serialize(t));
+  }
 
-    } else if (t instanceof Deadlines) {
-      Deadlines d = (Deadlines) t;
-      return join("D", status, d.getName(), d.getBy().toString());
+  /** Journals the removal of the task at the given 1-based index. */
+  public void appendRemove(int index1Based) throws YapException {
+    appendRecord("- | " + index1Based);
+  }
 
-    } else if (t instanceof Events) {
-      Events e = (Events) t;
-      String dateIso = e.getDate().toString();
-      String startHHmm = e.getStart().format(TIME_IO);
-      String endHHmm = e.getEnd().format(TIME_IO);
-      return join("E", status, e.getName(), dateIso, startHHmm, endHHmm);
+  /**
+   * Journals the removal of several tasks as one record, "- | i,j,k", with the indices as they
+   * were before any of them was removed.
+   *
+   * @param indices1Based strictly increasing 1-based indices
+   */
+  public void appendRemoveAll(int[] indices1Based) throws YapException {
+    StringBuilder sb = new StringBuilder("- | ");
+    for (int i = 0; i < indices1Based.length; i++) {
+      sb.append(i == 0 ? "" : ",").append(indices1Based[i]);
     }
+    appendRecord(sb.toString());
+  }
 
-    return join("?", status, t.getName());
+  /** Journals the new state of the task at the given 1-based index (complete, edit). */
+  public void appendUpdate(int index1Based, Task t) throws YapException {
+    appendRecord("= | " + index1Based + " | " + TaskCodec.serialize(t));
+  }
+
+  /**
+   * Journals the new state of several tasks in a single write.
+   *
+   * @param indices1Based 1-based index of each task
+   * @param updated the tasks, in the same order as their indices
+   */
+  public void appendUpdates(int[] indices1Based, List<Task> updated) throws YapException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < indices1Based.length; i++) {
+      if (i > 0) {
+        sb.append(System.lineSeparator());
+      }
+      sb.append("= | ").append(indices1Based[i]).append(" | ");
+      TaskCodec.appendTo(sb, updated.get(i));
+    }
+    appendRecord(sb.toString());
   }
 
-  private static Task deserialize(String line) {
-    String[] parts = Arrays.stream(line.split("\\|")).map(String::trim).toArray(String[]::new);
-    if (parts.length < 3) {
-      return null;
+  /**
+   * Journals tasks put back into the list (undoing a delete) in a single write, one "^ | index |
+   * task" record each.
+   *
+   * @param indices1Based strictly increasing 1-based indices the tasks end up at
+   * @param inserted the tasks, in the same order as their indices
+   */
+  public void appendInserts(int[] indices1Based, List<Task> inserted) throws YapException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < indices1Based.length; i++) {
+      if (i > 0) {
+        sb.append(System.lineSeparator());
+      }
+      sb.append("^ | ").append(indices1Based[i]).append(" | ");
+      TaskCodec.appendTo(sb, inserted.get(i));
     }
+    appendRecord(sb.toString());
+  }
 
-    String type = parts[0];
-    String status = parts[1];
+  /**
+   * Returns true once the journal has grown enough that a {@link #save(List)} is worthwhile, or
+   * when a failed background write lost journal records and only a full save brings the file back
+   * in line with memory.
+   */
+  public boolean needsCompaction() {
+    return journalBytes >= compactThreshold || (writer != null && writer.needsSnapshot());
+  }
 
+  private void appendRecord(String record) throws YapException {
+    JournalAppendEvent event = new JournalAppendEvent();
+    event.begin();
+    long start = System.nanoTime();
+    String text = journalBytes == 0
+        ? BASE_HEADER + generation + System.lineSeparator() + record + System.lineSeparator()
+        : record + System.lineSeparator();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    if (writer != null) {
+      writer.submitJournal(bytes);
+    } else {
+      try {
+        appendJournal(bytes);
+      } catch (IOException ex) {
+        throw new YapException("Failed to write journal: " + journal, ex);
+      }
+    }
+    journalBytes += bytes.length;
+    if (metrics != null) {
+      metrics.recordAppend(System.nanoTime() - start, bytes.length);
+    }
+    if (event.shouldCommit()) {
+      event.bytes = bytes.length;
+      event.background = writer != null;
+      event.commit();
+    }
+  }
+
+  private void replayJournal(List<Task> out) throws YapException {
+    journalBytes = 0;
     try {
-      switch (type) {
-        case "T":
-          {
-            ToDos t = new ToDos(parts[2]);
-            if ("1".equals(status)) {
-              t.setStatus(true);
-            }
-            return t;
+      if (!Files.exists(journal)) {
+        return;
+      }
+      boolean isCurrent = replayRecords(out, generation, t -> t);
+      if (!isCurrent) {
+        // Left over from before the last snapshot: already folded in.
+        Files.deleteIfExists(journal);
+        return;
+      }
+      journalBytes = Files.size(journal);
+    } catch (IOException ex) {
+      throw new YapException("Failed to read journal: " + journal, ex);
+    }
+  }
+
+  /**
+   * Applies the journal's records to {@code out} if it was written on top of snapshot {@code
+   * base}. Tasks in the records become list elements through {@code wrap}, so the same replay
+   * serves the task list and {@link #findWithoutLoading(String)}'s list of ordinals.
+   *
+   * @return false if the journal belongs to another snapshot and nothing was applied
+   */
+  private <T> boolean replayRecords(List<T> out, long base, Function<Task, T> wrap)
+      throws IOException {
+    try (BufferedReader r = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+      String header = r.readLine();
+      boolean isCurrent = header != null
+          && header.startsWith(BASE_HEADER)
+          && parseLongOr(header.substring(BASE_HEADER.length()), -1) == base;
+      String line;
+      PendingInserts<T> inserts = new PendingInserts<>();
+      while (isCurrent && (line = r.readLine()) != null) {
+        String record = line.trim();
+        if (record.startsWith("^")) {
+          inserts.add(record, out, wrap);
+        } else {
+          inserts.applyTo(out);
+          applyRecord(record, out, wrap); // corrupted records are skipped
+        }
+      }
+      inserts.applyTo(out);
+      return isCurrent;
+    }
+  }
+
+  private static <T> void applyRecord(String record, List<T> out, Function<Task, T> wrap) {
+    if (record.length() < 3) {
+      return;
+    }
+    String body = record.substring(1).trim();
+    if (!body.startsWith("|")) {
+      return;
+    }
+    body = body.substring(1).trim();
+    switch (record.charAt(0)) {
+      case '+':
+        {
+          Task t = TaskCodec.parse(body);
+          if (t != null) {
+            out.add(wrap.apply(t));
+          }
+          return;
+        }
+      case '-':
+        {
+          if (body.indexOf(',') >= 0) {
+            removeAll(body.split(","), out);
+            return;
+          }
+          int idx = (int) parseLongOr(body, -1);
+          if (idx >= 1 && idx <= out.size()) {
+            out.remove(idx - 1);
           }
-        case "D":
-          {
-            if (parts.length < 4) {
-              return null;
-            }
-            Deadlines d = new Deadlines(parts[2], parts[3]);
-            if ("1".equals(status)) {
-              d.setStatus(true);
-            }
-            return d;
+          return;
+        }
+      case '=':
+        {
+          int bar = body.indexOf('|');
+          if (bar < 0) {
+            return;
           }
-        case "E":
-          {
-            if (parts.length < 6) {
-              return null;
-            }
-            Events e = new Events(parts[2], parts[3], parts[4], parts[5]);
-            if ("1".equals(status)) {
-              e.setStatus(true);
-            }
-            return e;
+          int idx = (int) parseLongOr(body.substring(0, bar).trim(), -1);
+          Task t = TaskCodec.parse(body.substring(bar + 1));
+          if (t != null && idx >= 1 && idx <= out.size()) {
+            out.set(idx - 1, wrap.apply(t));
           }
-        default:
-          return null;
+          return;
+        }
+      default:
+        return;
+    }
+  }
+
+  /** Applies a bulk removal record in one pass; the record is skipped if any index is bad. */
+  private static <T> void removeAll(String[] indices, List<T> out) {
+    int[] sorted = new int[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      sorted[i] = (int) parseLongOr(indices[i], -1);
+      if (sorted[i] < 1 || sorted[i] > out.size() || (i > 0 && sorted[i] <= sorted[i - 1])) {
+        return;
+      }
+    }
+    int write = sorted[0] - 1;
+    int next = 0;
+    for (int read = write; read < out.size(); read++) {
+      if (next < sorted.length && sorted[next] - 1 == read) {
+        next++;
+      } else {
+        out.set(write++, out.get(read));
+      }
+    }
+    out.subList(write, out.size()).clear();
+  }
+
+  /**
+   * The list as positions only, for replaying the journal without the snapshot's tasks: a
+   * snapshot task is its ordinal, a task from the journal an entry in a side list. Elements are
+   * an {@link Integer} or a {@link Task}.
+   */
+  private static final class OrdinalList extends AbstractList<Object> implements RandomAccess {
+    private int[] codes; // >= 0: snapshot ordinal; < 0: journaled.get(-code - 1)
+    private int size;
+    private final List<Task> journaled = new ArrayList<>();
+
+    OrdinalList(int count) {
+      codes = new int[Math.max(count, 8)];
+      for (int i = 0; i < count; i++) {
+        codes[i] = i;
+      }
+      size = count;
+    }
+
+    int code(int index) {
+      return codes[index];
+    }
+
+    Task journaled(int code) {
+      return journaled.get(-code - 1);
+    }
+
+    @Override
+    public Object get(int index) {
+      Objects.checkIndex(index, size);
+      int code = codes[index];
+      return code >= 0 ? Integer.valueOf(code) : journaled(code);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+      Object old = get(index);
+      codes[index] = encode(element);
+      return old;
+    }
+
+    @Override
+    public void add(int index, Object element) {
+      Objects.checkIndex(index, size + 1);
+      if (size == codes.length) {
+        codes = Arrays.copyOf(codes, size * 2);
+      }
+      System.arraycopy(codes, index, codes, index + 1, size - index);
+      codes[index] = encode(element);
+      size++;
+      modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      Object old = get(index);
+      System.arraycopy(codes, index + 1, codes, index, size - index - 1);
+      size--;
+      modCount++;
+      return old;
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+      System.arraycopy(codes, to, codes, from, size - to);
+      size -= to - from;
+      modCount++;
+    }
+
+    private int encode(Object element) {
+      if (element instanceof Integer) {
+        return (Integer) element;
       }
-    } catch (RuntimeException ex) {
-      return null;
+      journaled.add((Task) element); // null only as a placeholder about to be overwritten
+      return -journaled.size();
     }
   }
 
-  private static String join(String a, String b, String c) {
-    return a + " | " + b + " | " + c;
+  /** A task read from a cold shard, with the reference it replaced and its record as read. */
+  private static final class Loaded {
+    final ColdTask ref;
+    final String record;
+
+    Loaded(ColdTask ref, String record) {
+      this.ref = ref;
+      this.record = record;
+    }
   }
 
-  private static String join(String a, String b, String c, String d) {
-    return a + " | " + b + " | " + c + " | " + d;
+  /**
+   * A run of "^ | index | task" records with increasing indices. Putting tasks back one at a time
+   * in that order ends with each at its index, so the run can be applied with a single shift of
+   * the list instead of one per record.
+   */
+  private static final class PendingInserts<T> {
+    private int[] indices = new int[8];
+    private final List<T> tasks = new ArrayList<>();
+
+    void add(String record, List<T> out, Function<Task, T> wrap) {
+      String[] parts = record.substring(1).split("\\|", 3);
+      if (parts.length != 3 || !parts[0].isBlank()) {
+        return;
+      }
+      int idx = (int) parseLongOr(parts[1], -1);
+      Task t = TaskCodec.parse(parts[2].trim());
+      int n = tasks.size();
+      if (n > 0 && idx <= indices[n - 1]) {
+        applyTo(out); // not part of this run
+        n = 0;
+      }
+      if (t == null || idx < 1 || idx > out.size() + n + 1) {
+        return;
+      }
+      if (n == indices.length) {
+        indices = Arrays.copyOf(indices, n * 2);
+      }
+      indices[n] = idx;
+      tasks.add(wrap.apply(t));
+    }
+
+    void applyTo(List<T> out) {
+      int n = tasks.size();
+      if (n == 0) {
+        return;
+      }
+      int read = out.size() - 1;
+      out.addAll(Collections.nCopies(n, null));
+      int next = n - 1;
+      for (int write = out.size() - 1; write >= indices[0] - 1; write--) {
+        boolean isInserted = next >= 0 && indices[next] - 1 == write;
+        out.set(write, isInserted ? tasks.get(next--) : out.get(read--));
+      }
+      tasks.clear();
+    }
   }
 
-  private static String join(String a, String b, String c, String d, String e, String f) {
-    return a + " | " + b + " | " + c + " | " + d + " | " + e + " | " + f;
+  private static long parseLongOr(String s, long fallback) {
+    try {
+      return Long.parseLong(s.trim());
+    } catch (NumberFormatException ex) {
+      return fallback;
+    }
   }
 }
@@ -0,0 +1,39 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for {@link Storage#load()}: reading the snapshot, replaying the journal. */
+@Name("yap.StorageLoad")
+@Label("Load Tasks")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class StorageLoadEvent extends jdk.jfr.Event {
+
+  @Label("File")
+  String file;
+
+  @Label("Task Count")
+  int taskCount;
+
+  @Label("Bytes Read")
+  @Description("Snapshot and journal together")
+  @DataAmount
+  long bytes;
+
+  @Label("Migrated")
+  @Description("Whether a text snapshot was rewritten as binary")
+  boolean migrated;
+
+  @Label("Archived")
+  @Description("Done tasks moved to the archive")
+  int archived;
+
+  @Label("Moved To Shards")
+  @Description("Tasks that had aged into a cold month and were filed out of the main file")
+  int movedToShards;
+}
@@ -0,0 +1,43 @@
+package yap.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for {@link Storage#save(java.util.List)} as seen by its caller: encoding
+ * the snapshot, then writing it or handing it to the background writer. The write itself is a
+ * {@link SnapshotWriteEvent}.
+ */
+@Name("yap.StorageSave")
+@Label("Save Tasks")
+@Category({"Yap", "Storage"})
+@StackTrace(false)
+final class StorageSaveEvent extends jdk.jfr.Event {
+
+  @Label("File")
+  String file;
+
+  @Label("Format")
+  String format;
+
+  @Label("Task Count")
+  int taskCount;
+
+  @Label("Snapshot Size")
+  @DataAmount
+  long bytes;
+
+  @Label("Background")
+  @Description("Whether the write was left to the background writer")
+  boolean background;
+
+  @Label("Move Time")
+  @Description("Time to rename the temporary file over the snapshot; 0 when written in background")
+  @Timespan(Timespan.NANOSECONDS)
+  long moveTime;
+}
@@ -0,0 +1,196 @@
+package yap.io;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.Events;
+import yap.task.Task;
+import yap.task.ToDos;
+
+/**
+ * Text form of a single task, e.g. "D | 0 | return book | 2019-12-02". A done task whose done day
+ * is known carries it as one more field at the end, e.g. "T | 1 | read book | 2026-10-18"; older
+ * readers ignore it. A task filed in a cold shard is saved as a reference to it, e.g. "@ | 0 |
+ * 2019-12 | 17" for the 18th record of the 2019-12 shard.
+ *
+ * <p>{@link #parse(String)} scans the line for '|' separators by hand and only materializes the
+ * fields a task actually keeps, so loading does not go through a regex split or a per-line array.
+ */
+final class TaskCodec {
+
+  private static final DateTimeFormatter TIME_IO = DateTimeFormatter.ofPattern("HHmm");
+
+  private TaskCodec() {}
+
+  static String serialize(Task t) {
+    StringBuilder sb = new StringBuilder(32 + t.getName().length());
+    appendTo(sb, t);
+    return sb.toString();
+  }
+
+  /** Appends the serialized task (without a line separator) to {@code sb}. */
+  static void appendTo(StringBuilder sb, Task t) {
+    if (t instanceof ColdTask) {
+      ColdTask c = (ColdTask) t;
+      sb.append("@ | 0 | ").append(c.getMonth()).append(" | ").append(c.getOrdinal());
+      return;
+    }
+    String status = t.getStatus() ? "1" : "0";
+
+    if (t instanceof ToDos) {
+      sb.append("T | ").append(status).append(" | ").append(t.getName());
+
+    } else if (t instanceof Deadlines) {
+      Deadlines d = (Deadlines) t;
+      sb.append("D | ").append(status).append(" | ").append(d.getName());
+      sb.append(" | ").append(d.getBy());
+
+    } else if (t instanceof Events) {
+      Events e = (Events) t;
+      sb.append("E | ").append(status).append(" | ").append(e.getName());
+      sb.append(" | ").append(e.getDate());
+      sb.append(" | ").append(e.getStart().format(TIME_IO));
+      sb.append(" | ").append(e.getEnd().format(TIME_IO));
+
+    } else {
+      sb.append("? | ").append(status).append(" | ").append(t.getName());
+    }
+    if (t.isDone() && t.getDoneOn() != null) {
+      sb.append(" | ").append(t.getDoneOn());
+    }
+  }
+
+  /**
+   * Parses one line. Returns null for lines that are corrupted or of an unknown type, so callers
+   * can skip them.
+   */
+  static Task parse(String line) {
+    int len = line.length();
+
+    // field 0: type tag (single character once trimmed)
+    int bar0 = line.indexOf('|');
+    if (bar0 < 0) {
+      return null;
+    }
+    int typeAt = skipSpace(line, 0, bar0);
+    if (typeAt >= bar0 || skipSpace(line, typeAt + 1, bar0) != bar0) {
+      return null;
+    }
+    char type = line.charAt(typeAt);
+
+    // field 1: status; only an exact "1" marks the task done
+    int bar1 = line.indexOf('|', bar0 + 1);
+    if (bar1 < 0) {
+      return null;
+    }
+    int statusAt = skipSpace(line, bar0 + 1, bar1);
+    boolean isDone = statusAt < bar1
+        && line.charAt(statusAt) == '1'
+        && skipSpace(line, statusAt + 1, bar1) == bar1;
+
+    // field 2: name, up to the next separator or the end of the line
+    int bar2 = line.indexOf('|', bar1 + 1);
+    int nameEnd = bar2 < 0 ? len : bar2;
+    String name = field(line, bar1 + 1, nameEnd);
+    if (name.isEmpty()) {
+      return null;
+    }
+
+    try {
+      Task t;
+      int last; // separator after the last field this type uses, or -1
+      switch (type) {
+        case 'T':
+          t = new ToDos(name);
+          last = bar2;
+          break;
+        case 'D':
+          {
+            if (bar2 < 0) {
+              return null;
+            }
+            int bar3 = line.indexOf('|', bar2 + 1);
+            t = new Deadlines(name, field(line, bar2 + 1, bar3 < 0 ? len : bar3));
+            last = bar3;
+            break;
+          }
+        case 'E':
+          {
+            if (bar2 < 0) {
+              return null;
+            }
+            int bar3 = line.indexOf('|', bar2 + 1);
+            int bar4 = bar3 < 0 ? -1 : line.indexOf('|', bar3 + 1);
+            if (bar4 < 0) {
+              return null;
+            }
+            int bar5 = line.indexOf('|', bar4 + 1);
+            t = new Events(
+                name,
+                field(line, bar2 + 1, bar3),
+                field(line, bar3 + 1, bar4),
+                field(line, bar4 + 1, bar5 < 0 ? len : bar5));
+            last = bar5;
+            break;
+          }
+        case '@':
+          {
+            if (bar2 < 0) {
+              return null;
+            }
+            int bar3 = line.indexOf('|', bar2 + 1);
+            return new ColdTask(YearMonth.parse(name),
+                Integer.parseInt(field(line, bar2 + 1, bar3 < 0 ? len : bar3)));
+          }
+        default:
+          return null;
+      }
+      if (isDone) {
+        t.setStatus(true);
+        if (last >= 0) {
+          t.setDoneOn(parseDay(line, last + 1, len));
+        }
+      }
+      return t;
+    } catch (RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /** Parses the optional done day; a malformed one is dropped rather than losing the task. */
+  private static LocalDate parseDay(String line, int from, int to) {
+    int bar = line.indexOf('|', from);
+    try {
+      return LocalDate.parse(field(line, from, bar < 0 ? to : bar));
+    } catch (DateTimeParseException ex) {
+      return null;
+    }
+  }
+
+  /** Returns true if the line is empty, whitespace or a "#" comment. */
+  static boolean isSkippable(String line) {
+    int i = skipSpace(line, 0, line.length());
+    return i == line.length() || line.charAt(i) == '#';
+  }
+
+  private static String field(String line, int from, int to) {
+    int start = skipSpace(line, from, to);
+    int end = to;
+    while (end > start && line.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return line.substring(start, end);
+  }
+
+  private static int skipSpace(String line, int from, int to) {
+    int i = from;
+    while (i < to && line.charAt(i) <= ' ') {
+      i++;
+    }
+    return i;
+  }
+}
@@ -1,8 +1,14 @@
 package yap.io;
 
+import java.io.IOException;
 import java.util.Scanner;
 
+import yap.task.TaskList;
+
 public class Ui {
+  /** Printed in front of every error message. */
+  public static final String ERROR_PREFIX = "☹ OOPS! ";
+
   private final Scanner in = new Scanner(System.in);
 
   public void showWelcome() {
@@ -33,8 +39,18 @@ public class Ui {
     System.out.println(msg);
   }
 
+  /** Prints a range of tasks straight to the console, without building the text first. */
+  public void showTasks(TaskList tasks, int from1Based, int count) {
+    try {
+      tasks.renderTo(System.out, from1Based, count);
+    } catch (IOException e) {
+      throw new AssertionError("System.out does not throw", e);
+    }
+    System.out.println();
+  }
+
   public void showError(String error) {
-    System.out.println("☹ OOPS! " + error);
+    System.out.println(ERROR_PREFIX + error);
   }
 
   public void showLoadingError() {
@@ -0,0 +1,22 @@
+package yap.parser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for one {@link Parser#parse(String)} call. The input text is not kept. */
+@Name("yap.Parse")
+@Label("Parse Command")
+@Category({"Yap", "Commands"})
+@Description("Turning one line of input into a command")
+@StackTrace(false)
+final class ParseEvent extends jdk.jfr.Event {
+
+  @Label("Kind")
+  String kind;
+
+  @Label("Input Length")
+  int inputLength;
+}
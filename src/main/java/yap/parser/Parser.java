@@ -1,7 +1,5 @@
 package yap.parser;
 
-import java.util.Optional;
-
 /**
  * Parser interprets raw user input into structured commands.
  *
@@ -21,6 +19,15 @@ public class Parser {
     HELP,
     EXIT,
     FIND,
+    DUE,
+    BETWEEN,
+    OVERDUE,
+    CONFLICTS,
+    STATS,
+    UNDO,
+    REDO,
+    ARCHIVE,
+    RESTORE,
     UNKNOWN
   }
 
@@ -37,41 +44,191 @@ public class Parser {
     }
   }
 
+  // Commands without a payload always parse to the same value, so they share one instance.
+  private static final Parsed EMPTY = new Parsed(Kind.UNKNOWN, "");
+  private static final Parsed SHOW_ALL = new Parsed(Kind.SHOW, "");
+  private static final Parsed END_ADD = new Parsed(Kind.ADD, "done");
+  private static final Parsed EDIT_NOTHING = new Parsed(Kind.EDIT, "");
+  private static final Parsed HELP = new Parsed(Kind.HELP, "");
+  private static final Parsed EXIT = new Parsed(Kind.EXIT, "");
+  private static final Parsed FIND_NOTHING = new Parsed(Kind.FIND, "");
+  private static final Parsed OVERDUE = new Parsed(Kind.OVERDUE, "");
+  private static final Parsed CONFLICTS = new Parsed(Kind.CONFLICTS, "");
+  private static final Parsed STATS = new Parsed(Kind.STATS, "");
+  private static final Parsed UNDO = new Parsed(Kind.UNDO, "");
+  private static final Parsed REDO = new Parsed(Kind.REDO, "");
+
   /**
    * Parses raw user input into a Parsed representation.
    *
+   * <p>Works on the input in place: the first letter picks the few keywords that can match, each
+   * is compared case-insensitively at the start of the trimmed input, and the payload is cut out
+   * with a single {@code substring}. No regex, lowercased copy, or other temporary is created;
+   * while no Flight Recorder recording has {@code yap.Parse} enabled, the JIT removes the event
+   * object too.
+   *
    * @param raw the raw input string
    * @return a Parsed object containing command kind and remaining text
    */
   public Parsed parse(String raw) {
-    String s = Optional.ofNullable(raw).orElse("").trim();
-    if (s.isEmpty()) return new Parsed(Kind.UNKNOWN, "");
-    String lower = s.toLowerCase();
+    ParseEvent event = new ParseEvent();
+    event.begin();
+    Parsed parsed = scan(raw);
+    if (event.shouldCommit()) {
+      event.kind = parsed.kind.name();
+      event.inputLength = raw == null ? 0 : raw.length();
+      event.commit();
+    }
+    return parsed;
+  }
+
+  private static Parsed scan(String raw) {
+    if (raw == null) return EMPTY;
+    int lo = 0;
+    int hi = raw.length();
+    while (lo < hi && raw.charAt(lo) <= ' ') lo++;
+    while (hi > lo && raw.charAt(hi - 1) <= ' ') hi--;
+    if (lo == hi) return EMPTY;
+
+    switch (raw.charAt(lo) | 0x20) {
+      case 'l':
+      case 's':
+        if (is(raw, lo, hi, "list") || is(raw, lo, hi, "show")) {
+          return SHOW_ALL;
+        } else if (startsWith(raw, lo, hi, "list ") || startsWith(raw, lo, hi, "show ")) {
+          return new Parsed(Kind.SHOW, rest(raw, lo + 5, hi)); // paging options
+        } else if (is(raw, lo, hi, "stats")) {
+          return STATS;
+        }
+        break;
+      case 'a':
+        if (is(raw, lo, hi, "archive") || startsWith(raw, lo, hi, "archive ")) {
+          return new Parsed(Kind.ARCHIVE, rest(raw, lo + 7, hi));
+        } else if (startsWith(raw, lo, hi, "add")) {
+          return new Parsed(Kind.ADD, rest(raw, lo + 3, hi)); // supports your add-mode trigger
+        }
+        break;
+      case 'e':
+        if (is(raw, lo, hi, "edit")) {
+          return EDIT_NOTHING;
+        } else if (isEditWithArgs(raw, lo, hi)) {
+          return new Parsed(Kind.EDIT, rest(raw, lo + 4, hi));
+        } else if (is(raw, lo, hi, "exit")) {
+          return EXIT;
+        }
+        break;
+      case 'd':
+        if (startsWith(raw, lo, hi, "delete")) {
+          return new Parsed(Kind.DELETE, rest(raw, lo + 6, hi));
+        } else if (startsWith(raw, lo, hi, "done ")) {
+          return new Parsed(Kind.COMPLETE, rest(raw, lo + 4, hi));
+        } else if (is(raw, lo, hi, "done")) { // end add-mode
+          return END_ADD;
+        } else if (is(raw, lo, hi, "due") || startsWith(raw, lo, hi, "due ")) {
+          return new Parsed(Kind.DUE, rest(raw, lo + 3, hi));
+        }
+        break;
+      case 'c':
+        if (startsWith(raw, lo, hi, "complete")) {
+          return new Parsed(Kind.COMPLETE, rest(raw, lo + 8, hi));
+        } else if (is(raw, lo, hi, "conflicts")) {
+          return CONFLICTS;
+        }
+        break;
+      case 'h':
+        if (is(raw, lo, hi, "help")) {
+          return HELP;
+        }
+        break;
+      case 'q':
+        if (is(raw, lo, hi, "quit")) {
+          return EXIT;
+        }
+        break;
+      case 'f':
+        if (startsWith(raw, lo, hi, "find ")) {
+          return new Parsed(Kind.FIND, rest(raw, lo + 5, hi));
+        } else if (is(raw, lo, hi, "find")) {
+          return FIND_NOTHING;
+        }
+        break;
+      case 'b':
+        if (is(raw, lo, hi, "between") || startsWith(raw, lo, hi, "between ")) {
+          return new Parsed(Kind.BETWEEN, rest(raw, lo + 7, hi));
+        }
+        break;
+      case 'o':
+        if (is(raw, lo, hi, "overdue")) {
+          return OVERDUE;
+        }
+        break;
+      case 'u':
+        if (is(raw, lo, hi, "undo")) {
+          return UNDO;
+        }
+        break;
+      case 'r':
+        if (is(raw, lo, hi, "redo")) {
+          return REDO;
+        } else if (is(raw, lo, hi, "restore") || startsWith(raw, lo, hi, "restore ")) {
+          return new Parsed(Kind.RESTORE, rest(raw, lo + 7, hi));
+        }
+        break;
+      default:
+        break;
+    }
+    return new Parsed(Kind.UNKNOWN, raw.substring(lo, hi));
+  }
+
+  /**
+   * Whether {@code s[lo, hi)} starts with {@code keyword}, ignoring the case of ASCII letters.
+   * Keywords are lowercase; a space in a keyword only matches a space.
+   */
+  private static boolean startsWith(String s, int lo, int hi, String keyword) {
+    int n = keyword.length();
+    if (hi - lo < n) {
+      return false;
+    }
+    for (int i = 0; i < n; i++) {
+      char k = keyword.charAt(i);
+      char c = s.charAt(lo + i);
+      if (k == ' ' ? c != ' ' : (c | 0x20) != k) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    if (lower.equals("list") || lower.equals("show")) {
-      return new Parsed(Kind.SHOW, "");
-    } else if (lower.startsWith("add")) {
-      return new Parsed(Kind.ADD, s.substring(3).trim()); // supports your add-mode trigger
-    }  else if (lower.equals("edit") || lower.matches("^edit\\s+.*")) {
-    String rest = lower.equals("edit") ? "" : s.replaceFirst("(?i)^edit\\s+", "").trim();
-    return new Parsed(Kind.EDIT, rest);
-  } else if (lower.startsWith("delete")) {
-      return new Parsed(Kind.DELETE, s.substring(6).trim());
-    } else if (lower.startsWith("complete") || lower.startsWith("done ")) {
-      String rest = lower.startsWith("done ") ? s.substring(4).trim() : s.substring(8).trim();
-      return new Parsed(Kind.COMPLETE, rest);
-    } else if (lower.equals("help")) {
-      return new Parsed(Kind.HELP, "");
-    } else if (lower.equals("exit") || lower.equals("quit")) {
-      return new Parsed(Kind.EXIT, "");
-    } else if (lower.equals("done")) { // end add-mode
-      return new Parsed(Kind.ADD, "done");
-    } else if (lower.startsWith("find ")) {
-      String keyword = s.substring(5).trim();
-      return new Parsed(Kind.FIND, keyword);
-    } else if (lower.equals("find")) {
-      return new Parsed(Kind.FIND, "");
+  private static boolean is(String s, int lo, int hi, String keyword) {
+    return hi - lo == keyword.length() && startsWith(s, lo, hi, keyword);
+  }
+
+  /**
+   * Matches {@code edit\s+.*}: "edit", at least one regex whitespace character, then anything up
+   * to the end that contains no line break.
+   */
+  private static boolean isEditWithArgs(String s, int lo, int hi) {
+    if (!startsWith(s, lo, hi, "edit") || hi - lo < 5 || !isRegexSpace(s.charAt(lo + 4))) {
+      return false;
+    }
+    int i = lo + 5;
+    while (i < hi && isRegexSpace(s.charAt(i))) i++;
+    for (; i < hi; i++) {
+      char c = s.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return false;
+      }
     }
-    return new Parsed(Kind.UNKNOWN, s);
+    return true;
+  }
+
+  private static boolean isRegexSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /** Returns {@code s[from, hi)} without leading whitespace; {@code hi} is already trimmed. */
+  private static String rest(String s, int from, int hi) {
+    while (from < hi && s.charAt(from) <= ' ') from++;
+    return from == hi ? "" : s.substring(from, hi);
   }
 }
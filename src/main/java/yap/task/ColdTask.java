@@ -0,0 +1,44 @@
+package yap.task;
+
+import java.time.YearMonth;
+
+/**
+ * Stands in for a task filed in a cold shard: it keeps the task's slot in the list, so every task
+ * keeps its number, until storage reads the shard and the real task takes the slot over.
+ *
+ * <p>It is named by its shard's month and its place in that shard's file. Lists leave it out of
+ * their search and date indexes.
+ */
+public final class ColdTask extends Task {
+
+  private final YearMonth month;
+  private final int ordinal;
+
+  /**
+   * @param month month of the shard holding the task
+   * @param ordinal 0-based place of the task among the records of that shard
+   */
+  public ColdTask(YearMonth month, int ordinal) {
+    super(month.toString());
+    this.month = month;
+    this.ordinal = ordinal;
+  }
+
+  public YearMonth getMonth() {
+    return month;
+  }
+
+  public int getOrdinal() {
+    return ordinal;
+  }
+
+  @Override
+  public ColdTask copy() {
+    return new ColdTask(month, ordinal);
+  }
+
+  @Override
+  protected String render() {
+    return "[?][ ] (in the " + month + " cold shard, not loaded)";
+  }
+}
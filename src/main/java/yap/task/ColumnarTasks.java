@@ -0,0 +1,222 @@
+package yap.task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list of tasks stored as columns of primitives instead of as task objects, for holding many
+ * tasks that are not being edited.
+ *
+ * <p>Each task is one slot across a few arrays: its type, a done bit, its date and done day as
+ * epoch days, its event times as minutes of the day, and where its name sits in a shared arena of
+ * UTF-8 bytes. That is about 20 bytes plus the name per task, against roughly 100 to 200 for a
+ * task object with its name string and date and time objects.
+ *
+ * <p>{@link #get(int)} builds a new task from the columns on every call. The task belongs to no
+ * list and editing it leaves the store unchanged; put it back with {@link #set(int, Task)}.
+ * Removing or replacing tasks leaves their old names in the arena until it is more than half
+ * waste, when the next write compacts it.
+ */
+public final class ColumnarTasks extends AbstractList<Task> implements RandomAccess {
+
+  private static final byte TASK = 0;
+  private static final byte TODO = 1;
+  private static final byte DEADLINE = 2;
+  private static final byte EVENT = 3;
+  private static final int NO_DAY = Integer.MIN_VALUE; // doneDays: done on an unknown day
+
+  private byte[] types;
+  private final BitSet done = new BitSet();
+  private int[] days; // deadline or event date as an epoch day; unused for the other types
+  private int[] doneDays; // NO_DAY while open or unknown
+  private short[] starts; // event start, minutes of the day
+  private short[] ends;
+  private int[] nameStarts;
+  private int[] nameLengths;
+  private byte[] arena;
+  private int arenaSize;
+  private int waste; // arena bytes no slot refers to
+  private int size;
+
+  public ColumnarTasks() {
+    this(10);
+  }
+
+  /** Creates a store holding copies of the given tasks, in order. */
+  public ColumnarTasks(Collection<? extends Task> tasks) {
+    this(tasks.size());
+    for (Task t : tasks) {
+      add(t);
+    }
+  }
+
+  private ColumnarTasks(int capacity) {
+    int n = Math.max(capacity, 1);
+    types = new byte[n];
+    days = new int[n];
+    doneDays = new int[n];
+    starts = new short[n];
+    ends = new short[n];
+    nameStarts = new int[n];
+    nameLengths = new int[n];
+    arena = new byte[n * 16];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Returns a new task with the fields stored at {@code index}. */
+  @Override
+  public Task get(int index) {
+    Objects.checkIndex(index, size);
+    String name = new String(arena, nameStarts[index], nameLengths[index], StandardCharsets.UTF_8);
+    Task t;
+    switch (types[index]) {
+      case TODO:
+        t = new ToDos(name);
+        break;
+      case DEADLINE:
+        t = new Deadlines(name, LocalDate.ofEpochDay(days[index]));
+        break;
+      case EVENT:
+        t = new Events(name, LocalDate.ofEpochDay(days[index]),
+            LocalTime.ofSecondOfDay(starts[index] * 60L),
+            LocalTime.ofSecondOfDay(ends[index] * 60L));
+        break;
+      case TASK:
+      default:
+        t = new Task(name);
+        break;
+    }
+    if (done.get(index)) {
+      t.setStatus(true);
+      t.setDoneOn(doneDays[index] == NO_DAY ? null : LocalDate.ofEpochDay(doneDays[index]));
+    }
+    return t;
+  }
+
+  /** Stores the fields of {@code t} at {@code index}; the task object itself is not kept. */
+  @Override
+  public Task set(int index, Task t) {
+    Task old = get(index);
+    waste += nameLengths[index];
+    nameLengths[index] = 0; // so a compaction while writing skips the old name
+    write(index, t);
+    return old;
+  }
+
+  @Override
+  public void add(int index, Task t) {
+    Objects.checkIndex(index, size + 1);
+    if (size == types.length) {
+      grow(size + (size >> 1) + 1);
+    }
+    shift(index, index + 1, size - index);
+    size++;
+    nameLengths[index] = 0;
+    write(index, t);
+    modCount++;
+  }
+
+  @Override
+  public Task remove(int index) {
+    Task old = get(index);
+    removeRange(index, index + 1);
+    return old;
+  }
+
+  @Override
+  protected void removeRange(int from, int to) {
+    for (int i = from; i < to; i++) {
+      waste += nameLengths[i];
+    }
+    shift(to, from, size - to);
+    size -= to - from;
+    modCount++;
+  }
+
+  /** Returns the bytes held by the columns and the name arena, including spare capacity. */
+  public long footprintBytes() {
+    return types.length * (1L + 4 + 4 + 2 + 2 + 4 + 4) + arena.length + done.size() / 8;
+  }
+
+  private void write(int index, Task t) {
+    Objects.requireNonNull(t, "task");
+    if (t instanceof Events) {
+      Events e = (Events) t;
+      types[index] = EVENT;
+      days[index] = (int) e.getDate().toEpochDay();
+      starts[index] = (short) (e.getStart().toSecondOfDay() / 60);
+      ends[index] = (short) (e.getEnd().toSecondOfDay() / 60);
+    } else if (t instanceof Deadlines) {
+      types[index] = DEADLINE;
+      days[index] = (int) ((Deadlines) t).getBy().toEpochDay();
+    } else {
+      types[index] = t instanceof ToDos ? TODO : TASK;
+    }
+    done.set(index, t.isDone());
+    LocalDate doneOn = t.getDoneOn();
+    doneDays[index] = doneOn == null ? NO_DAY : (int) doneOn.toEpochDay();
+
+    byte[] name = t.getName().getBytes(StandardCharsets.UTF_8);
+    if (waste > arenaSize / 2 && waste > 4096) {
+      compact();
+    }
+    if (arenaSize + name.length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arenaSize + name.length, arena.length * 2));
+    }
+    System.arraycopy(name, 0, arena, arenaSize, name.length);
+    nameStarts[index] = arenaSize;
+    nameLengths[index] = name.length;
+    arenaSize += name.length;
+  }
+
+  /** Moves {@code count} slots from {@code from} to {@code to} in every column. */
+  private void shift(int from, int to, int count) {
+    System.arraycopy(types, from, types, to, count);
+    System.arraycopy(days, from, days, to, count);
+    System.arraycopy(doneDays, from, doneDays, to, count);
+    System.arraycopy(starts, from, starts, to, count);
+    System.arraycopy(ends, from, ends, to, count);
+    System.arraycopy(nameStarts, from, nameStarts, to, count);
+    System.arraycopy(nameLengths, from, nameLengths, to, count);
+    BitSet moved = done.get(from, from + count);
+    done.clear(Math.min(from, to), Math.max(from, to) + count);
+    for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+      done.set(to + i);
+    }
+  }
+
+  private void grow(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    days = Arrays.copyOf(days, capacity);
+    doneDays = Arrays.copyOf(doneDays, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    nameStarts = Arrays.copyOf(nameStarts, capacity);
+    nameLengths = Arrays.copyOf(nameLengths, capacity);
+  }
+
+  /** Copies the names still referred to into a fresh arena, in slot order. */
+  private void compact() {
+    byte[] fresh = new byte[Math.max(arenaSize - waste, 16) * 2];
+    int at = 0;
+    for (int i = 0; i < size; i++) {
+      System.arraycopy(arena, nameStarts[i], fresh, at, nameLengths[i]);
+      nameStarts[i] = at;
+      at += nameLengths[i];
+    }
+    arena = fresh;
+    arenaSize = at;
+    waste = 0;
+  }
+}
@@ -0,0 +1,74 @@
+package yap.task;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of dated tasks: {@link Deadlines} by their due date and {@link Events} by their
+ * date. Tasks that are not done are also kept in a second map, so overdue queries never walk past
+ * finished work. The tasks of one date are a {@link Posting}, as a date rarely holds many.
+ */
+final class DateIndex {
+
+  private final NavigableMap<LocalDate, Posting> all = new TreeMap<>();
+  private final NavigableMap<LocalDate, Posting> open = new TreeMap<>();
+
+  void add(Task t) {
+    LocalDate date = dateOf(t);
+    if (date == null) {
+      return;
+    }
+    all.computeIfAbsent(date, k -> new Posting()).add(t);
+    if (!t.isDone()) {
+      open.computeIfAbsent(date, k -> new Posting()).add(t);
+    }
+  }
+
+  void remove(Task t) {
+    LocalDate date = dateOf(t);
+    if (date == null) {
+      return;
+    }
+    removeFrom(all, date, t);
+    removeFrom(open, date, t);
+  }
+
+  /** Tasks dated between {@code from} and {@code to}, both inclusive, in no particular order. */
+  List<Task> between(LocalDate from, LocalDate to) {
+    return collect(all.subMap(from, true, to, true));
+  }
+
+  /** Tasks not yet done and dated strictly before {@code date}, in no particular order. */
+  List<Task> openBefore(LocalDate date) {
+    return collect(open.headMap(date, false));
+  }
+
+  /** Returns the date a task is indexed under, or null for tasks without one. */
+  static LocalDate dateOf(Task t) {
+    if (t instanceof Deadlines) {
+      return ((Deadlines) t).getBy();
+    } else if (t instanceof Events) {
+      return ((Events) t).getDate();
+    }
+    return null;
+  }
+
+  private static List<Task> collect(Map<LocalDate, Posting> range) {
+    List<Task> out = new ArrayList<>();
+    for (Posting tasks : range.values()) {
+      out.addAll(tasks);
+    }
+    return out;
+  }
+
+  private static void removeFrom(Map<LocalDate, Posting> map, LocalDate date, Task t) {
+    Posting tasks = map.get(date);
+    if (tasks != null && tasks.drop(t) && tasks.isEmpty()) {
+      map.remove(date);
+    }
+  }
+}
@@ -23,18 +23,40 @@ public class Deadlines extends Task {
     assert by != null : "Parsed deadline date is null";
   }
 
+  /**
+   * Creates a deadline from an already parsed date.
+   *
+   * @param name task name
+   * @param by deadline date
+   */
+  public Deadlines(String name, LocalDate by) {
+    super(name);
+    assert by != null : "Deadline date must be present";
+    this.by = by;
+  }
+
   /** Returns the due date. */
   public LocalDate getBy() {
     return by;
   }
 
-  public void setBy(LocalDate by) { this.by = by; }
+  public void setBy(LocalDate by) {
+    beforeChange();
+    this.by = by;
+    afterChange();
+  }
+
   public void setBy(String iso) {
-    this.by = LocalDate.parse(iso, DateTimeFormatter.ISO_LOCAL_DATE);
+    setBy(LocalDate.parse(iso, DateTimeFormatter.ISO_LOCAL_DATE));
+  }
+
+  @Override
+  public Deadlines copy() {
+    return copyStatusTo(new Deadlines(getName(), by));
   }
 
   @Override
-  public String toString() {
-    return String.format("[D]%s (by: %s)", super.toString(), by.format(OUT_FMT));
+  protected String render() {
+    return "[D]" + super.render() + " (by: " + by.format(OUT_FMT) + ")";
   }
 }
@@ -15,6 +15,7 @@ public class Events extends Task {
   private LocalDate date;
   private LocalTime start;
   private LocalTime end;
+  IntervalTree.Node node; // this event's node in its list's interval tree, if any
 
   /**
    * Creates an event from a name, ISO date, and HHmm start/end times.
@@ -34,15 +35,44 @@ public class Events extends Task {
     assert !end.isBefore(start) : "Event end must not be before start";
   }
 
-  public void setDate(LocalDate date) { this.date = date; }
+  /**
+   * Creates an event from an already parsed date and times.
+   *
+   * @param name event name
+   * @param date event date
+   * @param start start time
+   * @param end end time
+   */
+  public Events(String name, LocalDate date, LocalTime start, LocalTime end) {
+    super(name);
+    assert date != null && start != null && end != null : "Event fields must be present";
+    this.date = date;
+    this.start = start;
+    this.end = end;
+    assert !end.isBefore(start) : "Event end must not be before start";
+  }
+
+  public void setDate(LocalDate date) {
+    beforeChange();
+    this.date = date;
+    afterChange();
+  }
+
   public void setDate(String iso) {
-    this.date = LocalDate.parse(iso, DateTimeFormatter.ISO_LOCAL_DATE);
+    setDate(LocalDate.parse(iso, DateTimeFormatter.ISO_LOCAL_DATE));
   }
   public void setStart(String hhmm) {
-    this.start = LocalTime.parse(hhmm, DateTimeFormatter.ofPattern("HHmm"));
+    LocalTime parsed = LocalTime.parse(hhmm, TIME_IN);
+    beforeChange();
+    this.start = parsed;
+    afterChange();
   }
+
   public void setEnd(String hhmm) {
-    this.end = LocalTime.parse(hhmm, DateTimeFormatter.ofPattern("HHmm"));
+    LocalTime parsed = LocalTime.parse(hhmm, TIME_IN);
+    beforeChange();
+    this.end = parsed;
+    afterChange();
   }
 
   public LocalDate getDate() {
@@ -58,9 +88,13 @@ public class Events extends Task {
   }
 
   @Override
-  public String toString() {
-    return String.format(
-        "[E]%s (from: %s %s to: %s)",
-        super.toString(), date.format(DATE_OUT), start.format(TIME_OUT), end.format(TIME_OUT));
+  public Events copy() {
+    return copyStatusTo(new Events(getName(), date, start, end));
+  }
+
+  @Override
+  protected String render() {
+    return "[E]" + super.render() + " (from: " + date.format(DATE_OUT) + " "
+        + start.format(TIME_OUT) + " to: " + end.format(TIME_OUT) + ")";
   }
 }
@@ -0,0 +1,206 @@
+package yap.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Interval tree over event time ranges, used to spot events that overlap.
+ *
+ * <p>Each event covers the half-open range [start, end) in minutes since the epoch, so back-to-back
+ * events do not clash. The tree is a treap ordered by start time where every node also records the
+ * largest end time in its subtree; a query skips any subtree whose largest end is not after the
+ * query's start. Inserts and removals take O(log n) expected time and a query O(log n + k).
+ */
+final class IntervalTree {
+
+  static final class Node {
+    final Events event;
+    final long start;
+    final long end;
+    final long seq; // tie-break for equal starts
+    final int priority;
+    long maxEnd;
+    Node left;
+    Node right;
+
+    Node(Events event, long start, long end, long seq, int priority) {
+      this.event = event;
+      this.start = start;
+      this.end = end;
+      this.seq = seq;
+      this.priority = priority;
+      this.maxEnd = end;
+    }
+
+    boolean isBefore(Node other) {
+      return start < other.start || (start == other.start && seq < other.seq);
+    }
+  }
+
+  private final Random priorities = new Random(0x7A9L);
+  private Node root;
+  private int size = 0;
+  private long nextSeq = 0;
+
+  void add(Events e) {
+    Node n = new Node(e, startOf(e), endOf(e), nextSeq++, priorities.nextInt());
+    e.node = n; // the event finds its node itself, so no map from events to nodes is needed
+    root = insert(root, n);
+    size++;
+  }
+
+  void remove(Events e) {
+    Node n = e.node;
+    if (n != null) {
+      e.node = null;
+      root = delete(root, n);
+      size--;
+    }
+  }
+
+  /** Returns the events overlapping {@code e}, not counting {@code e} itself. */
+  List<Events> overlapping(Events e) {
+    List<Events> out = new ArrayList<>();
+    collect(root, startOf(e), endOf(e), out);
+    out.remove(e);
+    return out;
+  }
+
+  /**
+   * Returns every pair of overlapping events, each pair once. Walks the events in start order
+   * while keeping the ones still running in a heap ordered by end time: O(n log n + k).
+   */
+  List<Events[]> overlappingPairs() {
+    List<Node> byStart = new ArrayList<>(size);
+    inOrder(root, byStart);
+
+    List<Events[]> out = new ArrayList<>();
+    PriorityQueue<Node> running = new PriorityQueue<>((a, b) -> Long.compare(a.end, b.end));
+    for (Node n : byStart) {
+      while (!running.isEmpty() && running.peek().end <= n.start) {
+        running.poll();
+      }
+      if (n.end <= n.start) {
+        continue; // empty range: clashes with nothing
+      }
+      for (Node other : running) {
+        out.add(new Events[] {other.event, n.event});
+      }
+      running.add(n);
+    }
+    return out;
+  }
+
+  static long startOf(Events e) {
+    return e.getDate().toEpochDay() * 1440 + e.getStart().getHour() * 60 + e.getStart().getMinute();
+  }
+
+  static long endOf(Events e) {
+    return e.getDate().toEpochDay() * 1440 + e.getEnd().getHour() * 60 + e.getEnd().getMinute();
+  }
+
+  private static void collect(Node n, long start, long end, List<Events> out) {
+    if (n == null || n.maxEnd <= start) {
+      return;
+    }
+    collect(n.left, start, end, out);
+    if (n.start < end) {
+      if (n.end > start && n.start < n.end && start < end) {
+        out.add(n.event);
+      }
+      collect(n.right, start, end, out);
+    }
+  }
+
+  private static void inOrder(Node n, List<Node> out) {
+    if (n == null) {
+      return;
+    }
+    inOrder(n.left, out);
+    out.add(n);
+    inOrder(n.right, out);
+  }
+
+  private static Node insert(Node root, Node n) {
+    if (root == null) {
+      return n;
+    }
+    if (n.isBefore(root)) {
+      root.left = insert(root.left, n);
+      if (root.left.priority > root.priority) {
+        root = rotateRight(root);
+      }
+    } else {
+      root.right = insert(root.right, n);
+      if (root.right.priority > root.priority) {
+        root = rotateLeft(root);
+      }
+    }
+    update(root);
+    return root;
+  }
+
+  private static Node delete(Node root, Node n) {
+    if (root == null) {
+      return null;
+    }
+    if (root == n) {
+      return merge(root.left, root.right);
+    }
+    if (n.isBefore(root)) {
+      root.left = delete(root.left, n);
+    } else {
+      root.right = delete(root.right, n);
+    }
+    update(root);
+    return root;
+  }
+
+  private static Node merge(Node a, Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority > b.priority) {
+      a.right = merge(a.right, b);
+      update(a);
+      return a;
+    }
+    b.left = merge(a, b.left);
+    update(b);
+    return b;
+  }
+
+  private static Node rotateRight(Node n) {
+    Node l = n.left;
+    n.left = l.right;
+    l.right = n;
+    update(n);
+    update(l);
+    return l;
+  }
+
+  private static Node rotateLeft(Node n) {
+    Node r = n.right;
+    n.right = r.left;
+    r.left = n;
+    update(n);
+    update(r);
+    return r;
+  }
+
+  private static void update(Node n) {
+    long max = n.end;
+    if (n.left != null) {
+      max = Math.max(max, n.left.maxEnd);
+    }
+    if (n.right != null) {
+      max = Math.max(max, n.right.maxEnd);
+    }
+    n.maxEnd = max;
+  }
+}
@@ -0,0 +1,47 @@
+package yap.task;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable array of tasks, used by the indexes in place of a hash set: one reference per entry
+ * rather than a hash node. The order is not kept, as {@link #drop(Task)} fills the gap with the
+ * last task.
+ */
+final class Posting extends AbstractList<Task> implements RandomAccess {
+
+  private Task[] tasks = new Task[2];
+  private int size;
+
+  @Override
+  public Task get(int index) {
+    return tasks[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean add(Task t) {
+    if (size == tasks.length) {
+      tasks = Arrays.copyOf(tasks, size + (size >> 1) + 1);
+    }
+    tasks[size++] = t;
+    return true;
+  }
+
+  /** Removes this very task object, if present; takes time linear in the size of the posting. */
+  boolean drop(Task t) {
+    for (int i = 0; i < size; i++) {
+      if (tasks[i] == t) {
+        tasks[i] = tasks[--size];
+        tasks[size] = null;
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -1,15 +1,26 @@
 package yap.task;
 
+import java.time.LocalDate;
+
 /**
  * Abstract base class representing a generic Task.
  *
  * <p>Responsibilities: store task name and completion state, and provide core behaviours common to
  * all tasks. Collaborators: extended by ToDos, Deadlines, and Events.
+ *
+ * <p>A done task also knows the day it was marked done, which decides when it is archived; tasks
+ * saved before that was recorded have no such day until storage gives them one.
  */
 public class Task {
 
   private String name;
   private boolean isDone;
+  private LocalDate doneOn; // day markDone() was called; null while open or if unknown
+  private String rendered; // cached toString(); cleared whenever a field changes
+
+  // Maintained by the TaskList holding this task, so it can keep its indexes in step with edits.
+  TaskList owner;
+  int position; // 0-based slot in owner
 
   /** Creates a new task with the given name; tasks start as not done. */
   public Task(String name) {
@@ -36,8 +47,14 @@ public class Task {
     return isDone ? "X" : " ";
   }
 
+  /** Sets the done flag as read from storage; the done day is left to {@link #setDoneOn}. */
   public void setStatus(Boolean isdone) {
+    beforeChange();
     this.isDone = isdone;
+    if (!isdone) {
+      this.doneOn = null;
+    }
+    afterChange();
   }
 
   public Boolean getStatus() {
@@ -49,18 +66,82 @@ public class Task {
     return Boolean.TRUE.equals(isDone);
   }
 
-  /** Marks this task as completed. */
+  /** Marks this task as completed, today unless it was already done. */
   public void markDone() {
 
+    beforeChange();
+    if (!isDone) {
+      this.doneOn = LocalDate.now();
+    }
     this.isDone = true;
+    afterChange();
+  }
+
+  /** Returns the day this task was marked done, or null if it is open or the day is unknown. */
+  public LocalDate getDoneOn() {
+    return doneOn;
+  }
+
+  /** Sets the day this task was marked done; ignored while the task is open. */
+  public void setDoneOn(LocalDate day) {
+    if (isDone) {
+      this.doneOn = day;
+    }
   }
 
   public void setName(String name) {
+    beforeChange();
     this.name = name;
+    afterChange();
+  }
+
+  /**
+   * Returns a task with the same fields and status that belongs to no list, so an earlier state
+   * can be kept (for undo) while this one is edited in place. Subclasses return their own type.
+   */
+  public Task copy() {
+    return copyStatusTo(new Task(name));
   }
 
+  /** Gives {@code copy} this task's done status and day and returns it. */
+  protected final <T extends Task> T copyStatusTo(T copy) {
+    Task c = copy; // through Task: private fields are not visible via T
+    c.isDone = isDone;
+    c.doneOn = doneOn;
+    return copy;
+  }
+
+  /** Lets the owning list drop this task from its indexes while the old values are still set. */
+  void beforeChange() {
+    if (owner != null) {
+      owner.beforeChange(this);
+    }
+  }
+
+  /** Lets the owning list index this task again under its new values. */
+  void afterChange() {
+    rendered = null;
+    if (owner != null) {
+      owner.afterChange(this);
+    }
+  }
+
+  /**
+   * Returns the display line of this task. It is built once and reused until one of the setters
+   * changes the task.
+   */
   @Override
-  public String toString() {
-    return String.format("[%s] %s", this.getStatusIcon(), this.name);
+  public final String toString() {
+    String line = rendered;
+    if (line == null) {
+      line = render();
+      rendered = line;
+    }
+    return line;
+  }
+
+  /** Builds the display line; subclasses add their type tag and dates around {@code [X] name}. */
+  protected String render() {
+    return "[" + getStatusIcon() + "] " + name;
   }
 }
@@ -1,7 +1,15 @@
 package yap.task;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Maintains an ordered list of {@link Task} objects and provides operations to add, remove, access,
@@ -9,20 +17,87 @@ import java.util.List;
  *
  * <p>Responsibilities: storage, 1-based access semantics, string rendering. Collaborators: {@link
  * Task} and its subclasses.
+ *
+ * <p>Every task knows its owner and its slot, and calls back here before and after one of its
+ * indexed fields changes, so the indexes below stay correct even when a task is edited in place.
+ * {@link ColdTask} placeholders hold their slots but are in none of the indexes.
+ *
+ * <p>Snapshots: {@link #snapshot()} hands out an immutable view that shares the backing array
+ * instead of copying it. Appends never touch the part of the array a snapshot can see; the first
+ * removal after a snapshot was taken copies the array once. Every change bumps {@link #version()},
+ * and a snapshot is stamped with the version it was taken at.
  */
 public class TaskList {
 
-  private final List<Task> tasks;
+  /**
+   * Read-only view of the list as it was when taken. The order and membership are fixed; the tasks
+   * themselves are the live objects, so a later edit to a task is visible through the view.
+   */
+  public static final class Snapshot extends AbstractList<Task> implements RandomAccess {
+    private final Task[] items;
+    private final int size;
+    private final long version;
+
+    private Snapshot(Task[] items, int size, long version) {
+      this.items = items;
+      this.size = size;
+      this.version = version;
+    }
+
+    /** Returns the version of the list this view was taken at. */
+    public long version() {
+      return version;
+    }
+
+    @Override
+    public Task get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+      }
+      return items[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Renders {@code count} tasks starting at a 1-based index, as {@link TaskList#render(int, int)}
+     * would have when this view was taken, so every page of a listing shows the same list.
+     *
+     * @throws IndexOutOfBoundsException if the range is not inside the view
+     */
+    public String render(int from1Based, int count) {
+      return TaskList.render(items, size, from1Based, count);
+    }
+  }
+
+  private static final int RENDER_CHUNK = 256; // lines per write in renderTo
+
+  private Task[] items;
+  private int size = 0;
+  private boolean isShared = false; // a snapshot may be looking at items
+  private long version = 0;
+  private Snapshot snapshot; // cached until the next change
+
+  private final TokenIndex tokens = new TokenIndex(); // also answers exact name lookups
+  private final DateIndex dates = new DateIndex();
+  private final IntervalTree eventTimes = new IntervalTree();
+  private String nameBefore; // name of the task being edited, between beforeChange and afterChange
 
   public TaskList() {
-    this.tasks = new ArrayList<>();
+    this.items = new Task[10];
   }
 
   public TaskList(List<Task> initial) {
 
     assert initial != null : "Initial task list must not be null";
     for (Task t : initial) assert t != null : "Initial task list contains null task";
-    this.tasks = new ArrayList<>(initial);
+    this.items = new Task[Math.max(10, initial.size())];
+    for (Task t : initial) {
+      add(t);
+    }
   }
 
   /**
@@ -32,8 +107,13 @@ public class TaskList {
    */
   public int size() {
 
-    assert tasks != null : "tasks list not initialized";
-    return tasks.size();
+    assert items != null : "tasks list not initialized";
+    return size;
+  }
+
+  /** Returns a number that grows with every change to the list or to one of its tasks. */
+  public long version() {
+    return version;
   }
 
   /**
@@ -45,7 +125,8 @@ public class TaskList {
    */
   public Task get(int index1Based) {
     assert index1Based >= 1 && index1Based <= size() : "1-based index out of range: " + index1Based;
-    Task t = tasks.get(index1Based - 1);
+    Objects.checkIndex(index1Based - 1, size);
+    Task t = items[index1Based - 1];
     assert t != null : "Stored task is null";
     return t;
   }
@@ -58,7 +139,15 @@ public class TaskList {
   public void add(Task t) {
 
     assert t != null : "Cannot add null task";
-    tasks.add(t);
+    if (size == items.length) {
+      items = Arrays.copyOf(items, size + (size >> 1) + 1);
+      isShared = false;
+    }
+    t.owner = this;
+    t.position = size;
+    items[size++] = t; // beyond every snapshot's size, so no copy needed even when shared
+    index(t);
+    version++;
   }
 
   /**
@@ -70,34 +159,411 @@ public class TaskList {
    */
   public Task remove(int index1Based) {
     assert index1Based >= 1 && index1Based <= size() : "1-based index out of range: " + index1Based;
-    Task removed = tasks.remove(index1Based - 1);
+    Objects.checkIndex(index1Based - 1, size);
+    if (isShared) {
+      items = Arrays.copyOf(items, items.length);
+      isShared = false;
+    }
+    Task removed = items[index1Based - 1];
     assert removed != null : "Removed task unexpectedly null";
+    System.arraycopy(items, index1Based, items, index1Based - 1, size - index1Based);
+    items[--size] = null;
+    unindex(removed);
+    removed.owner = null;
+    for (int i = index1Based - 1; i < size; i++) {
+      items[i].position = i;
+    }
+    version++;
+    rebuildTokensIfStale();
     return removed;
   }
 
+  /**
+   * Removes the tasks at the given 1-based indices in one pass: the survivors are shifted down
+   * once, rather than once per removed task.
+   *
+   * @param indices1Based strictly increasing 1-based indices
+   * @return the removed tasks, in list order
+   * @throws IndexOutOfBoundsException if an index is invalid
+   */
+  public List<Task> removeAll(int[] indices1Based) {
+    for (int i = 0; i < indices1Based.length; i++) {
+      Objects.checkIndex(indices1Based[i] - 1, size);
+      assert i == 0 || indices1Based[i - 1] < indices1Based[i] : "Indices must be increasing";
+    }
+    List<Task> removed = new ArrayList<>(indices1Based.length);
+    if (indices1Based.length == 0) {
+      return removed;
+    }
+    if (isShared) {
+      items = Arrays.copyOf(items, items.length);
+      isShared = false;
+    }
+    int write = indices1Based[0] - 1;
+    int next = 0;
+    for (int read = write; read < size; read++) {
+      Task t = items[read];
+      if (next < indices1Based.length && indices1Based[next] - 1 == read) {
+        next++;
+        unindex(t);
+        t.owner = null;
+        removed.add(t);
+      } else {
+        t.position = write;
+        items[write++] = t;
+      }
+    }
+    Arrays.fill(items, write, size, null);
+    size = write;
+    version++;
+    rebuildTokensIfStale();
+    return removed;
+  }
+
+  /**
+   * Puts tasks back at the given 1-based indices in one pass; the inverse of {@link
+   * #removeAll(int[])}. Each index is the position the task will have once all of them are in.
+   *
+   * @param indices1Based strictly increasing 1-based indices into the resulting list
+   * @param inserted the tasks, in the same order as their indices
+   * @throws IndexOutOfBoundsException if an index is beyond the resulting list
+   */
+  public void insertAll(int[] indices1Based, List<Task> inserted) {
+    assert indices1Based.length == inserted.size() : "One index per task";
+    int newSize = size + indices1Based.length;
+    for (int i = 0; i < indices1Based.length; i++) {
+      Objects.checkIndex(indices1Based[i] - 1, newSize);
+      assert i == 0 || indices1Based[i - 1] < indices1Based[i] : "Indices must be increasing";
+    }
+    if (indices1Based.length == 0) {
+      return;
+    }
+    if (isShared || newSize > items.length) {
+      items = Arrays.copyOf(items, Math.max(newSize, items.length));
+      isShared = false;
+    }
+    // Fill from the back so every survivor moves once and is read before it is overwritten.
+    int read = size - 1;
+    int next = indices1Based.length - 1;
+    for (int write = newSize - 1; write >= indices1Based[0] - 1; write--) {
+      Task t;
+      if (next >= 0 && indices1Based[next] - 1 == write) {
+        t = inserted.get(next--);
+        t.owner = this;
+      } else {
+        t = items[read--];
+      }
+      t.position = write;
+      items[write] = t;
+    }
+    size = newSize;
+    for (Task t : inserted) {
+      index(t);
+    }
+    version++;
+  }
+
+  /**
+   * Replaces the task at the given 1-based index.
+   *
+   * @return the task that was there
+   * @throws IndexOutOfBoundsException if the index is invalid
+   */
+  public Task set(int index1Based, Task t) {
+    assert t != null : "Cannot store null task";
+    Objects.checkIndex(index1Based - 1, size);
+    if (isShared) {
+      items = Arrays.copyOf(items, items.length);
+      isShared = false;
+    }
+    Task old = items[index1Based - 1];
+    unindex(old);
+    old.owner = null;
+    t.owner = this;
+    t.position = index1Based - 1;
+    items[index1Based - 1] = t;
+    index(t);
+    version++;
+    rebuildTokensIfStale();
+    return old;
+  }
+
+  /** Called by a task of this list before one of its indexed fields changes. */
+  void beforeChange(Task t) {
+    nameBefore = t.getName();
+    unindexDates(t);
+  }
+
+  /**
+   * Called by a task of this list after one of its indexed fields changed. The name index is only
+   * touched when the name is what changed.
+   */
+  void afterChange(Task t) {
+    if (!t.getName().equals(nameBefore)) {
+      tokens.removed(nameBefore);
+      tokens.add(t);
+    }
+    indexDates(t);
+    version++;
+    rebuildTokensIfStale();
+  }
+
+  /** Adds the task to every index; called on add and insert. */
+  private void index(Task t) {
+    if (t instanceof ColdTask) {
+      return; // a placeholder has no name or date to find it by
+    }
+    tokens.add(t);
+    indexDates(t);
+  }
+
+  /** Takes the task out of every index; called on remove and replace. */
+  private void unindex(Task t) {
+    if (t instanceof ColdTask) {
+      return;
+    }
+    tokens.removed(t.getName());
+    unindexDates(t);
+  }
+
+  private void indexDates(Task t) {
+    dates.add(t);
+    if (t instanceof Events) {
+      eventTimes.add((Events) t);
+    }
+  }
+
+  private void unindexDates(Task t) {
+    dates.remove(t);
+    if (t instanceof Events) {
+      eventTimes.remove((Events) t);
+    }
+  }
+
+  /** Refiles every task once removed and renamed ones make up half the name index. */
+  private void rebuildTokensIfStale() {
+    if (tokens.isStale()) {
+      tokens.rebuild(Arrays.asList(items).subList(0, size));
+    }
+  }
+
+  /** Returns the 1-based index of this very task object, or -1 if it is not in this list. */
+  public int indexOf(Task t) {
+    return t.owner == this ? t.position + 1 : -1;
+  }
+
+  /**
+   * Returns the 1-based index of the first task whose name is exactly {@code name}, or -1 if there
+   * is none. Only the tasks sharing the rarest three-letter piece of the name are looked at.
+   *
+   * @param name exact, case-sensitive task name
+   * @return 1-based index, or -1 if not found
+   */
+  public int indexOfName(String name) {
+    List<Integer> same = indicesOfName(name);
+    return same.isEmpty() ? -1 : same.get(0);
+  }
+
+  /**
+   * Returns the 1-based indices of all tasks named exactly {@code name}, in list order.
+   *
+   * @param name exact, case-sensitive task name
+   * @return 1-based indices; empty if none
+   */
+  public List<Integer> indicesOfName(String name) {
+    BitSet hits = new BitSet();
+    for (Task t : candidates(name.toLowerCase())) {
+      if (t.owner == this && !(t instanceof ColdTask) && t.getName().equals(name)) {
+        hits.set(t.position);
+      }
+    }
+    return positionsOf(hits);
+  }
+
+  /**
+   * Returns the tasks that may contain {@code needle}: those the name index offers, or every task
+   * if the needle has nothing to look up. The index may offer stale entries and duplicates, so
+   * callers keep only tasks of this list, once each.
+   */
+  private Collection<Task> candidates(String needle) {
+    Collection<Task> candidates = tokens.candidates(needle);
+    return candidates == null ? snapshot() : candidates; // all punctuation: nothing to look up
+  }
+
+  /**
+   * Returns the 1-based indices of deadlines due, and events held, between two dates (both
+   * inclusive), in list order.
+   *
+   * @param from first date of the range
+   * @param to last date of the range
+   * @return 1-based indices; empty if none or if {@code to} is before {@code from}
+   */
+  public List<Integer> indicesBetween(LocalDate from, LocalDate to) {
+    if (to.isBefore(from)) {
+      return new ArrayList<>();
+    }
+    return positionsOf(dates.between(from, to));
+  }
+
+  /**
+   * Returns the 1-based indices of deadlines and events dated before {@code today} that are not
+   * done yet, in list order.
+   *
+   * @param today first date that is not overdue
+   * @return 1-based indices; empty if none
+   */
+  public List<Integer> indicesOverdue(LocalDate today) {
+    return positionsOf(dates.openBefore(today));
+  }
+
+  /**
+   * Returns the 1-based indices of the other events in this list whose time ranges overlap the
+   * given event's, in list order. Back-to-back events (one ends as the other starts) do not overlap.
+   *
+   * @param e an event of this list
+   * @return 1-based indices; empty if it clashes with nothing
+   */
+  public List<Integer> indicesOverlapping(Events e) {
+    return positionsOf(eventTimes.overlapping(e));
+  }
+
+  /**
+   * Returns every pair of overlapping events as 1-based index pairs {@code {i, j}} with
+   * {@code i < j}, sorted by {@code i} then {@code j}.
+   *
+   * @return index pairs; empty if no events overlap
+   */
+  public List<int[]> conflictingPairs() {
+    List<int[]> out = new ArrayList<>();
+    for (Events[] pair : eventTimes.overlappingPairs()) {
+      int a = pair[0].position + 1;
+      int b = pair[1].position + 1;
+      out.add(new int[] {Math.min(a, b), Math.max(a, b)});
+    }
+    out.sort((x, y) -> x[0] != y[0] ? Integer.compare(x[0], y[0]) : Integer.compare(x[1], y[1]));
+    return out;
+  }
+
+  private static List<Integer> positionsOf(BitSet hits) {
+    List<Integer> out = new ArrayList<>(hits.cardinality());
+    for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+      out.add(i + 1);
+    }
+    return out;
+  }
+
+  private static List<Integer> positionsOf(List<? extends Task> hits) {
+    List<Integer> out = new ArrayList<>(hits.size());
+    for (Task t : hits) {
+      out.add(t.position + 1);
+    }
+    out.sort(null);
+    return out;
+  }
+
+  /**
+   * Returns an immutable view of the current tasks without copying them; the same view is returned
+   * until the list changes.
+   *
+   * @return snapshot stamped with the current {@link #version()}
+   */
+  public Snapshot snapshot() {
+    if (snapshot == null || snapshot.version != version) {
+      snapshot = new Snapshot(items, size, version);
+      isShared = true;
+    }
+    return snapshot;
+  }
+
+  /** Same as {@link #snapshot()}; kept for callers that just need a {@code List}. */
   public List<Task> all() {
-    return new ArrayList<>(tasks);
+    return snapshot();
   }
 
   /**
-   * Returns a string rendering of all tasks for display.
+   * Returns a string rendering of all tasks for display. Each task's line is cached on the task, so
+   * this only copies characters into a buffer sized up front.
    *
    * @return a multi-line string of tasks
    */
   public String render() {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < tasks.size(); i++) {
-      sb.append(i + 1).append(". ").append(tasks.get(i).toString());
-      if (i + 1 < tasks.size()) sb.append(System.lineSeparator());
+    return render(1, size);
+  }
+
+  /**
+   * Renders {@code count} tasks starting at a 1-based index, numbered by their place in the whole
+   * list.
+   *
+   * @param from1Based index of the first task to render
+   * @param count number of tasks to render
+   * @return a multi-line string of tasks
+   * @throws IndexOutOfBoundsException if the range is not inside the list
+   */
+  public String render(int from1Based, int count) {
+    return render(items, size, from1Based, count);
+  }
+
+  private static String render(Task[] items, int size, int from1Based, int count) {
+    Objects.checkFromIndexSize(from1Based - 1, count, size);
+    String sep = System.lineSeparator();
+    int length = 0;
+    for (int i = from1Based - 1; i < from1Based - 1 + count; i++) {
+      length += digits(i + 1) + 2 + items[i].toString().length() + sep.length();
     }
+    StringBuilder sb = new StringBuilder(length);
+    appendLines(items, sb, from1Based - 1, from1Based - 1 + count, sep);
     return sb.toString();
   }
 
+  /**
+   * Writes the same text as {@link #render(int, int)} to {@code out}, a chunk of lines at a time,
+   * without building the whole listing in memory.
+   *
+   * @param out where to write
+   * @param from1Based index of the first task to write
+   * @param count number of tasks to write
+   * @throws IOException if {@code out} fails
+   * @throws IndexOutOfBoundsException if the range is not inside the list
+   */
+  public void renderTo(Appendable out, int from1Based, int count) throws IOException {
+    Objects.checkFromIndexSize(from1Based - 1, count, size);
+    String sep = System.lineSeparator();
+    StringBuilder chunk = new StringBuilder(RENDER_CHUNK * 64);
+    int end = from1Based - 1 + count;
+    for (int i = from1Based - 1; i < end; i += RENDER_CHUNK) {
+      chunk.setLength(0);
+      appendLines(items, chunk, i, Math.min(i + RENDER_CHUNK, end), sep);
+      if (i + RENDER_CHUNK < end) {
+        chunk.append(sep);
+      }
+      out.append(chunk);
+    }
+  }
+
+  /** Appends lines {@code from0..to0-1} (0-based), separated but not terminated by {@code sep}. */
+  private static void appendLines(Task[] items, StringBuilder sb, int from0, int to0, String sep) {
+    for (int i = from0; i < to0; i++) {
+      sb.append(i + 1).append(". ").append(items[i].toString());
+      if (i + 1 < to0) sb.append(sep);
+    }
+  }
+
+  private static int digits(int n) {
+    int d = 1;
+    while (n >= 10) {
+      n /= 10;
+      d++;
+    }
+    return d;
+  }
+
   /**
    * Returns the 1-based indices of tasks whose names contain the given keyword (case-insensitive).
+   * Only tasks sharing the keyword's rarest three-letter piece are looked at, so the cost follows
+   * the number of likely hits rather than the size of the list.
    *
    * @param keyword search term; if null or blank, returns an empty list
-   * @return list of 1-based indices of matching tasks
+   * @return list of 1-based indices of matching tasks, in list order
    */
   public List<Integer> findIndices(String keyword) {
     List<Integer> out = new ArrayList<>();
@@ -108,13 +574,13 @@ public class TaskList {
     if (needle.isEmpty()) {
       return out;
     }
-    for (int i = 0; i < this.size(); i++) {
-      Task t = this.get(i + 1);
-      if (t.getName().toLowerCase().contains(needle)) {
-        out.add(i + 1); // 1-based indexing per your list semantics
+    BitSet hits = new BitSet();
+    for (Task t : candidates(needle)) {
+      if (t.owner == this && !hits.get(t.position) && t.getName().toLowerCase().contains(needle)) {
+        hits.set(t.position);
       }
     }
-    return out;
+    return positionsOf(hits);
   }
 
   /**
@@ -127,13 +593,18 @@ public class TaskList {
     if (indices == null || indices.isEmpty()) {
       return "";
     }
-    StringBuilder sb = new StringBuilder();
+    String sep = System.lineSeparator();
+    int length = 0;
+    for (int i = 0; i < indices.size(); i++) {
+      length += digits(i + 1) + 1 + this.get(indices.get(i)).toString().length() + sep.length();
+    }
+    StringBuilder sb = new StringBuilder(length);
     for (int i = 0; i < indices.size(); i++) {
       int idx = indices.get(i);
       Task t = this.get(idx); // get is 1-based in your code
       sb.append(i + 1).append('.').append(t.toString());
       if (i + 1 < indices.size()) {
-        sb.append(System.lineSeparator());
+        sb.append(sep);
       }
     }
     return sb.toString();
@@ -7,7 +7,12 @@ public class ToDos extends Task {
   }
 
   @Override
-  public String toString() {
-    return String.format("[T]" + super.toString());
+  public ToDos copy() {
+    return copyStatusTo(new ToDos(getName()));
+  }
+
+  @Override
+  protected String render() {
+    return "[T]" + super.render();
   }
 }
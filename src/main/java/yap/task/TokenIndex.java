@@ -0,0 +1,152 @@
+package yap.task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from the three-letter pieces of lowercase name tokens to the tasks that contain
+ * them.
+ *
+ * <p>A token is a maximal run of letters/digits in the lowercased name. Any piece of a search term
+ * that has no separators in it can only occur inside a single token, so a task holding that piece
+ * holds each of its {@value #GRAM}-letter grams. The tasks under the rarest of those grams are a
+ * superset of the real matches. Tokens shorter than a gram are filed whole, and a piece shorter
+ * than a gram is looked up under every key that contains it.
+ *
+ * <p>Each key holds a {@link Posting}: one reference per task instead of a hash set entry, and
+ * there is no per-token level, so a name costs a few references. Removals are lazy: a removed or
+ * renamed task stays in its old postings until the stale entries make up half of the index, when
+ * the owning list rebuilds it. Callers must therefore check each candidate (still in the list,
+ * name still matching) and expect duplicates.
+ */
+final class TokenIndex {
+
+  private static final int GRAM = 3;
+  private static final int MIN_REBUILD = 1024; // stale entries worth a rebuild
+
+  private final Map<String, Posting> postings = new HashMap<>();
+  private long entries; // references held, live or stale
+  private long stale;
+
+  void add(Task t) {
+    for (String key : keys(t.getName().toLowerCase())) {
+      postings.computeIfAbsent(key, k -> new Posting()).add(t);
+      entries++;
+    }
+  }
+
+  /** Records that a task filed under {@code name} left the list or was renamed. */
+  void removed(String name) {
+    stale += keys(name.toLowerCase()).size();
+  }
+
+  /** True once stale entries make up half the index, so a rebuild is due. */
+  boolean isStale() {
+    return stale >= MIN_REBUILD && stale * 2 >= entries;
+  }
+
+  /** Drops every entry and files the given tasks again. */
+  void rebuild(List<Task> live) {
+    postings.clear();
+    entries = 0;
+    stale = 0;
+    for (Task t : live) {
+      if (!(t instanceof ColdTask)) {
+        add(t);
+      }
+    }
+  }
+
+  /**
+   * Returns every task whose lowercased name might contain {@code needle}, possibly with stale
+   * entries and duplicates, or null if the needle has no letters or digits to look up (callers then
+   * fall back to a scan).
+   *
+   * @param needle lowercased, trimmed search term
+   */
+  Collection<Task> candidates(String needle) {
+    List<String> pieces = tokens(needle);
+    if (pieces.isEmpty()) {
+      return null;
+    }
+    Posting best = null;
+    String longest = null;
+    for (String piece : pieces) {
+      if (piece.length() >= GRAM) {
+        Posting rarest = rarestGram(piece);
+        if (rarest == null) {
+          return List.of(); // a gram nobody has: no task can match
+        }
+        if (best == null || rarest.size() < best.size()) {
+          best = rarest;
+        }
+      } else if (longest == null || piece.length() > longest.length()) {
+        longest = piece;
+      }
+    }
+    if (best != null) {
+      return best;
+    }
+    List<Task> out = new ArrayList<>();
+    for (Map.Entry<String, Posting> e : postings.entrySet()) {
+      if (e.getKey().contains(longest)) {
+        out.addAll(e.getValue());
+      }
+    }
+    return out;
+  }
+
+  /** Returns the smallest posting among the grams of {@code piece}, or null if one is missing. */
+  private Posting rarestGram(String piece) {
+    Posting rarest = null;
+    for (int i = 0; i + GRAM <= piece.length(); i++) {
+      Posting p = postings.get(piece.substring(i, i + GRAM));
+      if (p == null || p.isEmpty()) {
+        return null;
+      }
+      if (rarest == null || p.size() < rarest.size()) {
+        rarest = p;
+      }
+    }
+    return rarest;
+  }
+
+  /** Returns the distinct keys a lowercased name is filed under. */
+  private static List<String> keys(String lower) {
+    List<String> out = new ArrayList<>();
+    for (String token : tokens(lower)) {
+      if (token.length() < GRAM) {
+        addOnce(out, token);
+      } else {
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+          addOnce(out, token.substring(i, i + GRAM));
+        }
+      }
+    }
+    return out;
+  }
+
+  private static void addOnce(List<String> keys, String key) {
+    if (!keys.contains(key)) { // names are short: a scan beats a set
+      keys.add(key);
+    }
+  }
+
+  private static List<String> tokens(String lower) {
+    List<String> out = new ArrayList<>(4);
+    int start = -1;
+    for (int i = 0; i <= lower.length(); i++) {
+      boolean isTokenChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+      if (isTokenChar && start < 0) {
+        start = i;
+      } else if (!isTokenChar && start >= 0) {
+        out.add(lower.substring(start, i));
+        start = -1;
+      }
+    }
+    return out;
+  }
+}
@@ -0,0 +1,84 @@
+package yap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the chat history stays bounded over a long session: what it keeps, in what order,
+ * and what it spills. The time and heap this costs are measured by {@code ChatHistoryBenchmark}.
+ */
+public class ChatHistoryTest {
+
+  private static final int MESSAGES = 5_000;
+  private static final int LIMIT = 100;
+
+  @TempDir Path dir;
+
+  @Test
+  void longSession_keepsTheNewestAndSpillsTheRestInOrder() throws Exception {
+    Path spill = dir.resolve("history.txt");
+    ChatHistory history = new ChatHistory(LIMIT, spill);
+    for (int i = 0; i < MESSAGES; i++) {
+      history.add(new ChatMessage("message " + i, i % 2 == 0));
+    }
+    history.close();
+
+    assertEquals(LIMIT, history.messages().size());
+    assertEquals("message " + (MESSAGES - LIMIT), history.messages().get(0).getText());
+    assertEquals("message " + (MESSAGES - 1), history.messages().get(LIMIT - 1).getText());
+    List<String> spilled = Files.readAllLines(spill);
+    assertEquals(MESSAGES - LIMIT, spilled.size());
+    assertEquals("> message 0", spilled.get(0));
+    assertEquals("< message 1", spilled.get(1));
+    assertEquals("< message " + (MESSAGES - LIMIT - 1), spilled.get(spilled.size() - 1));
+  }
+
+  @Test
+  void spill_indentsLaterLinesOfAMessage() throws Exception {
+    Path spill = dir.resolve("history.txt");
+    ChatHistory history = new ChatHistory(1, spill);
+    history.add(new ChatMessage("Here are your tasks:\n1. read", false));
+    history.add(new ChatMessage("bye", true));
+    history.close();
+
+    assertEquals(List.of("< Here are your tasks:", "  1. read"), Files.readAllLines(spill));
+    assertEquals(1, history.messages().size());
+  }
+
+  @Test
+  void withoutSpillFile_dropsEvictedMessages() {
+    ChatHistory history = new ChatHistory(2, null);
+    for (int i = 0; i < 5; i++) {
+      history.add(new ChatMessage("m" + i, true));
+    }
+    history.close();
+    assertEquals(List.of("m3", "m4"),
+        history.messages().stream().map(ChatMessage::getText).toList());
+  }
+
+  @Test
+  void replace_swapsPendingReplyInPlace() {
+    ChatHistory history = new ChatHistory(3, null);
+    ChatMessage pending = new ChatMessage("...", false);
+    history.add(new ChatMessage("list", true));
+    history.add(pending);
+    ChatMessage reply = new ChatMessage("No tasks yet.", false);
+    history.replace(pending, reply);
+
+    assertSame(reply, history.messages().get(1));
+
+    history.add(new ChatMessage("a", true));
+    history.add(new ChatMessage("b", true));
+    history.add(new ChatMessage("c", true));
+    history.replace(reply, pending); // already evicted: nothing happens
+    assertEquals(List.of("a", "b", "c"),
+        history.messages().stream().map(ChatMessage::getText).toList());
+  }
+}
@@ -0,0 +1,179 @@
+package yap.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import yap.io.Storage;
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.TaskList;
+import yap.task.ToDos;
+
+/** Tests that commands report through {@link CommandResult} and persist through the journal. */
+public class CommandEngineTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void execute_reportsMessagesChangesAndErrors() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    CommandEngine engine = new CommandEngine(new TaskList(), new Storage(file));
+
+    engine.execute("add");
+    CommandResult added = engine.execute("t read book");
+    assertEquals(List.of("Added: [T][ ] read book"), added.messages());
+    assertEquals(1, added.changedTasks().size());
+    assertFalse(added.hasErrors());
+
+    CommandResult missing = engine.execute("delete 2");
+    assertTrue(missing.hasErrors());
+    assertTrue(missing.changedTasks().isEmpty());
+
+    engine.execute("done");
+    CommandResult unknown = engine.execute("blah");
+    assertEquals(List.of("I don't understand. Type 'help' for commands."), unknown.errors());
+    assertEquals("☹ OOPS! I don't understand. Type 'help' for commands." + System.lineSeparator(),
+        unknown.render());
+
+    assertTrue(engine.execute("exit").isExit());
+    engine.flush();
+    assertEquals(1, new Storage(file).load().size());
+  }
+
+  @Test
+  void undoRedo_reverseEachCommandAndReachTheJournal() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    CommandEngine engine = new CommandEngine(new TaskList(), new Storage(file));
+    engine.execute("add");
+    engine.execute("t a");
+    engine.execute("d b/2019-12-02");
+    engine.execute("t c");
+    engine.execute("done");
+    String added = engine.tasks().render();
+
+    engine.execute("complete 2");
+    engine.execute("edit 1 n/renamed");
+    engine.execute("delete 1,3");
+    assertEquals(1, engine.tasks().size());
+
+    assertEquals(List.of("Undone: delete 1,3", "  [T][ ] renamed", "  [T][ ] c"),
+        List.of(engine.execute("undo").messages().get(0).split(System.lineSeparator())));
+    engine.execute("undo");
+    engine.execute("undo");
+    assertEquals(added, engine.tasks().render());
+
+    engine.execute("redo");
+    assertEquals("[D][X] b (by: Dec 02 2019)", engine.tasks().get(2).toString());
+    engine.execute("add");
+    engine.execute("t d"); // a new change drops what could have been redone
+    engine.execute("done");
+    assertEquals(List.of("Nothing to redo."), engine.execute("redo").errors());
+
+    engine.flush();
+    assertEquals(engine.tasks().render(), new TaskList(new Storage(file).load()).render());
+  }
+
+  @Test
+  void coldShards_loadInPlaceWhenACommandReachesThem() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage seed = new Storage(file);
+    seed.load();
+    seed.save(List.of(new ToDos("read book"), new Deadlines("old report", "2019-11-05"),
+        new Deadlines("new report", "2020-02-01")));
+
+    Storage storage = new Storage(file);
+    storage.setColdBefore(YearMonth.of(2020, 1));
+    CommandEngine engine = new CommandEngine(new TaskList(storage.load()), storage);
+    assertEquals(3, engine.tasks().size());
+    engine.execute("complete 1");
+    assertEquals(1, storage.coldTaskCount());
+    assertEquals("Tasks 2-3 of 3:", engine.execute("list --from 2").messages().get(0));
+    assertEquals(0, storage.coldTaskCount());
+    assertEquals("[D][ ] old report (by: Nov 05 2019)", engine.tasks().get(2).toString());
+
+    engine.execute("complete 2"); // the number it had before it went cold
+    assertTrue(engine.tasks().get(2).isDone());
+    engine.execute("undo");
+    engine.execute("undo"); // recorded before the shard loaded, still in the right place
+    assertFalse(engine.tasks().get(1).isDone());
+    assertFalse(engine.tasks().get(2).isDone());
+
+    engine.flush();
+    Storage reopened = new Storage(file);
+    reopened.setColdBefore(YearMonth.of(2020, 1));
+    assertTrue(reopened.load().get(1) instanceof ColdTask);
+    assertEquals(engine.tasks().render(), new TaskList(new Storage(file).load()).render());
+  }
+
+  @Test
+  void undoRedo_coverBulkStepsKeptInColumns() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    TaskList list = new TaskList();
+    for (int i = 1; i <= UndoHistory.COLUMNAR_FROM * 2; i++) {
+      list.add(i % 2 == 0 ? new ToDos("task " + i) : new Deadlines("task " + i, "2019-12-02"));
+    }
+    CommandEngine engine = new CommandEngine(list, new Storage(file));
+    engine.execute("complete 1-100");
+    String before = engine.tasks().render();
+
+    engine.execute("delete find:task");
+    assertEquals(0, engine.tasks().size());
+    engine.execute("undo");
+    assertEquals(before, engine.tasks().render());
+    engine.execute("redo");
+    engine.execute("undo");
+    engine.execute("undo"); // the completions, stored as before and after states
+    assertFalse(engine.tasks().get(1).isDone());
+    engine.execute("redo");
+    assertEquals(before, engine.tasks().render());
+
+    engine.flush();
+    assertEquals(before, new TaskList(new Storage(file).load()).render());
+  }
+
+  @Test
+  void failedJournalWrite_leavesTheListAndHistoryAsTheyWere() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    CommandEngine engine = new CommandEngine(new TaskList(), new Storage(file));
+    engine.execute("add");
+    engine.execute("t a");
+    engine.execute("d b/2019-12-02");
+    engine.execute("done");
+    engine.save();
+    String saved = engine.tasks().render();
+
+    Path journal = dir.resolve("tasks.txt.log");
+    java.nio.file.Files.createDirectories(journal); // every append now fails
+    assertTrue(engine.execute("delete 1").hasErrors());
+    assertTrue(engine.execute("delete 1-2").hasErrors());
+    assertTrue(engine.execute("complete 2").hasErrors());
+    assertTrue(engine.execute("complete 1-2").hasErrors());
+    assertTrue(engine.execute("edit 1 n/c").hasErrors());
+    assertTrue(engine.execute("undo").hasErrors());
+    assertEquals(saved, engine.tasks().render());
+
+    java.nio.file.Files.delete(journal);
+    assertTrue(engine.execute("undo").messages().get(0).startsWith("Undone: add d b/2019-12-02"));
+    assertEquals(1, new Storage(file).load().size());
+  }
+
+  @Test
+  void batchRun_savesAtTheEndWithoutJournaling() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Path script = dir.resolve("commands.txt");
+    java.nio.file.Files.write(script, List.of("# import", "add", "t a", "t b", "done", "delete 1"));
+
+    assertEquals(5, new BatchRunner(file.toString(), 0).run(script));
+
+    assertFalse(java.nio.file.Files.exists(dir.resolve("tasks.txt.log")));
+    assertEquals("b", new Storage(file.toString()).load().get(0).getName());
+  }
+}
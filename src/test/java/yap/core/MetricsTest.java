@@ -0,0 +1,65 @@
+package yap.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import yap.io.Storage;
+import yap.parser.Parser;
+import yap.task.TaskList;
+
+/** Tests the latency histogram and what {@link CommandEngine} records into {@link Metrics}. */
+public class MetricsTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void histogram_percentilesStayWithinBucketPrecision() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (long v = 1; v <= 100_000; v++) {
+      h.record(v * 1_000); // 1 us .. 100 ms
+    }
+    assertEquals(100_000, h.count());
+    assertEquals(100_000_000L, h.max());
+    assertEquals(50_000_000.0, h.percentile(50), 50_000_000.0 * 0.035);
+    assertEquals(99_000_000.0, h.percentile(99), 99_000_000.0 * 0.035);
+    assertEquals(100_000_000L, h.percentile(100));
+
+    h.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, h.max());
+  }
+
+  @Test
+  void engine_recordsCommandsStorageAndTaskCount() throws Exception {
+    Storage storage = new Storage(dir.resolve("tasks.txt").toString());
+    Metrics metrics = new Metrics();
+    storage.setMetrics(metrics);
+    CommandEngine engine = new CommandEngine(new TaskList(storage.load()), storage, metrics);
+
+    engine.execute("add");
+    engine.execute("t a");
+    engine.execute("t b");
+    engine.execute("done");
+    engine.execute("delete 1");
+    engine.execute("list");
+
+    assertEquals(4, metrics.command(Parser.Kind.ADD).count());
+    assertEquals(1, metrics.command(Parser.Kind.DELETE).count());
+    assertEquals(1, metrics.loads().count());
+    assertEquals(3, metrics.appends().count());
+
+    String report = engine.execute("stats").messages().get(0);
+    assertTrue(report.contains("Tasks: 1 now, 2 peak"), report);
+
+    Path dump = dir.resolve("metrics.json");
+    metrics.writeTo(dump);
+    String json = Files.readString(dump);
+    assertTrue(json.contains("\"DELETE\": {\"count\": 1"), json);
+    assertTrue(json.contains("\"samples\": [["), json);
+  }
+}
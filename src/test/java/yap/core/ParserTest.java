@@ -55,4 +55,42 @@ public class ParserTest {
     assertEquals(Parser.Kind.FIND, res.kind);
     assertEquals("", res.rest);
   }
+
+  @Test
+  void parsesDateQueries() {
+    Parser p = new Parser();
+    assertEquals(Parser.Kind.DUE, p.parse("due 2019-12-02").kind);
+    assertEquals("2019-12-02", p.parse("due 2019-12-02").rest);
+    assertEquals(Parser.Kind.BETWEEN, p.parse("Between 2019-12-01 2019-12-31").kind);
+    assertEquals("2019-12-01 2019-12-31", p.parse("between 2019-12-01 2019-12-31").rest);
+    assertEquals(Parser.Kind.OVERDUE, p.parse("overdue").kind);
+    assertEquals(Parser.Kind.STATS, p.parse("Stats").kind);
+    assertEquals(Parser.Kind.UNDO, p.parse("undo").kind);
+    assertEquals(Parser.Kind.REDO, p.parse(" REDO ").kind);
+    assertEquals(Parser.Kind.ARCHIVE, p.parse("archive find book").kind);
+    assertEquals("find book", p.parse("Archive  find book").rest);
+    assertEquals(Parser.Kind.RESTORE, p.parse("restore 3,7-9").kind);
+    assertEquals("3,7-9", p.parse("restore 3,7-9").rest);
+    assertEquals(Parser.Kind.ADD, p.parse("add").kind);
+  }
+
+  @Test
+  void parsesDoneAsEndOfAddModeOrComplete() {
+    Parser p = new Parser();
+    assertEquals(Parser.Kind.ADD, p.parse("  DONE ").kind);
+    assertEquals("done", p.parse("done").rest);
+    assertEquals(Parser.Kind.COMPLETE, p.parse("done  read book").kind);
+    assertEquals("read book", p.parse("done  read book").rest);
+    assertEquals(Parser.Kind.UNKNOWN, p.parse("doner").kind);
+  }
+
+  @Test
+  void parsesEditOnlyWhenFollowedByWhitespace() {
+    Parser p = new Parser();
+    assertEquals("", p.parse("edit").rest);
+    assertEquals("2 n/new name", p.parse("Edit \t 2 n/new name").rest);
+    assertEquals(Parser.Kind.UNKNOWN, p.parse("editor").kind);
+    assertEquals(Parser.Kind.ADD, p.parse("address").kind);
+    assertEquals("ress", p.parse("address").rest);
+  }
 }
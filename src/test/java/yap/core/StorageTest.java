@@ -0,0 +1,406 @@
+package yap.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import yap.io.Archive;
+import yap.io.Storage;
+import yap.task.ColdTask;
+import yap.task.Deadlines;
+import yap.task.Task;
+import yap.task.TaskList;
+import yap.task.ToDos;
+
+/**
+ * Tests the journaled save path: replay on load, compaction, stale journals, cold shards, the
+ * archive and the search index.
+ */
+public class StorageTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void load_replaysJournalOnTopOfSnapshot() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+
+    List<Task> tasks = new ArrayList<>();
+    tasks.add(new ToDos("read book"));
+    storage.save(tasks);
+
+    Task deadline = new Deadlines("return book", "2019-12-02");
+    storage.appendAdd(deadline);
+    deadline.markDone();
+    storage.appendUpdate(2, deadline);
+    storage.appendRemove(1);
+
+    List<Task> loaded = new Storage(file).load();
+    assertEquals(1, loaded.size());
+    assertEquals("[D][X] return book (by: Dec 02 2019)", loaded.get(0).toString());
+  }
+
+  @Test
+  void load_replaysBulkRecords() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+    List<Task> tasks = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      tasks.add(new ToDos("task " + i));
+    }
+    storage.save(tasks);
+
+    tasks.get(1).markDone();
+    tasks.get(4).markDone();
+    storage.appendUpdates(new int[] {2, 5}, List.of(tasks.get(1), tasks.get(4)));
+    storage.appendRemoveAll(new int[] {1, 3});
+
+    List<Task> loaded = new Storage(file).load();
+    assertEquals(3, loaded.size());
+    assertEquals("[T][X] task 2", loaded.get(0).toString());
+    assertEquals("[T][X] task 5", loaded.get(2).toString());
+  }
+
+  @Test
+  void save_compactsJournal() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Storage storage = new Storage(file.toString(), 10);
+    storage.load();
+
+    Task t = new ToDos("read book");
+    storage.appendAdd(t);
+    assertTrue(storage.needsCompaction());
+
+    storage.save(List.of(t));
+    assertFalse(storage.needsCompaction());
+    assertFalse(Files.exists(dir.resolve("tasks.txt.log")));
+    assertEquals(1, new Storage(file.toString()).load().size());
+  }
+
+  @Test
+  void load_ignoresJournalFromOlderGeneration() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Files.writeString(file, "# gen 2\nT | 0 | read book\n");
+    Files.writeString(dir.resolve("tasks.txt.log"), "# base 1\n+ | T | 0 | already folded\n");
+
+    List<Task> loaded = new Storage(file.toString()).load();
+    assertEquals(1, loaded.size());
+    assertEquals("read book", loaded.get(0).getName());
+  }
+
+  @Test
+  void backgroundWriter_coalescesBurstIntoFewWrites() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, 1_000);
+    storage.load();
+
+    for (int i = 0; i < 20; i++) {
+      storage.appendAdd(new ToDos("task " + i));
+    }
+    storage.flush();
+
+    assertEquals(19, storage.coalescedSaves());
+    assertEquals(20, new Storage(file).load().size());
+  }
+
+  @Test
+  void load_migratesTextSnapshotToBinary() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Files.writeString(
+        file,
+        "T | 1 | read book\n"
+            + "D | 0 | return book | 2019-12-02\n"
+            + "E | 0 | project meeting | 2019-12-02 | 1800 | 2000\n");
+
+    List<Task> fromText = new Storage(
+        file.toString(), Storage.DEFAULT_COMPACT_THRESHOLD, 0, Storage.Format.BINARY).load();
+    assertEquals('Y', Files.readAllBytes(file)[0]);
+
+    List<Task> fromBinary = new Storage(file.toString()).load();
+    assertEquals(3, fromBinary.size());
+    assertEquals(fromText.toString(), fromBinary.toString());
+  }
+
+  @Test
+  void load_keepsTheRecordsBeforeAGarbledOrTruncatedBinaryOne() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Storage storage = new Storage(
+        file.toString(), Storage.DEFAULT_COMPACT_THRESHOLD, 0, Storage.Format.BINARY);
+    storage.load();
+    storage.save(List.of(new ToDos("read book"), new ToDos("buy milk")));
+    byte[] saved = Files.readAllBytes(file);
+    int secondLength = 17 + 12 + 2; // header, then "read book", then the tag and done bytes
+
+    // A name length of 2^31 - 1 where "buy milk" had 8: must not be allocated.
+    byte[] garbled = new byte[saved.length + 4];
+    System.arraycopy(saved, 0, garbled, 0, secondLength);
+    byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+    System.arraycopy(huge, 0, garbled, secondLength, huge.length);
+    System.arraycopy(saved, secondLength + 1, garbled, secondLength + huge.length,
+        saved.length - secondLength - 1);
+    Files.write(file, garbled);
+    assertEquals("[[T][ ] read book]", new Storage(file.toString()).load().toString());
+
+    Files.write(file, Arrays.copyOf(saved, saved.length - 3)); // cut inside "buy milk"
+    assertEquals("[[T][ ] read book]", new Storage(file.toString()).load().toString());
+  }
+
+  @Test
+  void coldShards_holdOldMonthsInTheirSlotsUntilLoaded() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+    List<Task> tasks = new ArrayList<>();
+    tasks.add(new ToDos("read book"));
+    tasks.add(new Deadlines("old report", "2019-11-05"));
+    Task returned = new Deadlines("return book", "2019-12-02");
+    returned.markDone();
+    tasks.add(returned);
+    tasks.add(new Deadlines("next report", "2020-02-01"));
+    storage.save(tasks);
+
+    Storage sharded = new Storage(file);
+    sharded.setColdBefore(YearMonth.of(2020, 1));
+    List<Task> loaded = sharded.load();
+    assertEquals(4, loaded.size()); // every task keeps its number
+    assertTrue(loaded.get(1) instanceof ColdTask);
+    assertTrue(loaded.get(2) instanceof ColdTask);
+    assertEquals(2, sharded.coldTaskCount());
+    Path november = dir.resolve("tasks.txt.shards").resolve("2019-11.txt");
+    assertTrue(Files.exists(dir.resolve("tasks.txt.shards").resolve("2019-12.txt")));
+    String shardBefore = Files.readString(november);
+
+    // Only months with something unfinished, as for "overdue".
+    Map<ColdTask, Task> open = sharded.loadCold(null, LocalDate.of(2019, 12, 31), true);
+    assertEquals(1, open.size());
+    Task report = open.get(loaded.get(1));
+    assertEquals("[D][ ] old report (by: Nov 05 2019)", report.toString());
+    assertEquals(1, sharded.coldTaskCount());
+
+    // Saved unchanged, it is a reference again; the shard is not touched.
+    loaded.set(1, report);
+    sharded.save(loaded);
+    Storage reopened = new Storage(file);
+    reopened.setColdBefore(YearMonth.of(2020, 1));
+    assertTrue(reopened.load().get(1) instanceof ColdTask);
+    assertEquals(shardBefore, Files.readString(november));
+
+    // With shards off, the tasks come back into their old slots.
+    assertEquals(tasks.toString(), new Storage(file).load().toString());
+  }
+
+  @Test
+  void coldShards_dropRecordsTheMainFileNoLongerRefersTo() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+    storage.save(List.of(new ToDos("read book"), new Deadlines("old report", "2019-11-05"),
+        new Deadlines("old memo", "2019-11-20")));
+    Storage sharded = new Storage(file);
+    sharded.setColdBefore(YearMonth.of(2020, 1));
+    List<Task> loaded = sharded.load();
+    Path november = dir.resolve("tasks.txt.shards").resolve("2019-11.txt");
+    assertTrue(Files.readString(november).startsWith("# shard 2019-11 tasks 2 open 2"));
+
+    loaded.remove(1); // the report's record is referred to no more
+    sharded.save(loaded);
+    Storage reopened = new Storage(file);
+    reopened.setColdBefore(YearMonth.of(2020, 1));
+    List<Task> again = reopened.load();
+    assertTrue(Files.readString(november).startsWith("# shard 2019-11 tasks 1 open 1"));
+    assertEquals("[D][ ] old memo (by: Nov 20 2019)",
+        reopened.loadCold(List.of(YearMonth.of(2019, 11))).get(again.get(1)).toString());
+
+    new Storage(file).load(); // shards off: the memo moves back into the main file
+    new Storage(file).load(); // and then nothing refers to the shard at all
+    assertFalse(Files.exists(november));
+    storage.writeSearchIndex();
+    assertEquals(1, new Storage(file).findWithoutLoading("memo").size());
+  }
+
+  @Test
+  void archive_takesLongDoneTasksOutOfTheMainFile() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+    List<Task> tasks = new ArrayList<>();
+    tasks.add(new ToDos("read book"));
+    Task oldDone = new ToDos("return book");
+    oldDone.markDone();
+    oldDone.setDoneOn(LocalDate.of(2026, 1, 5));
+    tasks.add(oldDone);
+    Task recentDone = new Deadlines("buy book", "2026-03-01");
+    recentDone.markDone();
+    recentDone.setDoneOn(LocalDate.of(2026, 3, 1));
+    tasks.add(recentDone);
+    storage.save(tasks);
+
+    Storage archiving = new Storage(file);
+    archiving.setArchiveBefore(LocalDate.of(2026, 2, 1));
+    List<Task> live = archiving.load();
+    assertEquals(2, live.size());
+    assertEquals(LocalDate.of(2026, 3, 1), live.get(1).getDoneOn()); // survives the snapshot
+    assertEquals(2, new Storage(file).load().size());
+
+    List<Archive.Entry> hits = archiving.findArchived("BOOK");
+    assertEquals(1, hits.size());
+    assertEquals(1, hits.get(0).number());
+    assertEquals("[T][X] return book", hits.get(0).task().toString());
+
+    archiving.markRestored(new int[] {1});
+    assertTrue(archiving.findArchived("book").isEmpty());
+    assertTrue(archiving.readArchived(new int[] {1}).isEmpty());
+  }
+
+  @Test
+  void archive_appendsEachWriteInPlace() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    List<Task> tasks = new ArrayList<>();
+    for (String name : new String[] {"return book", "buy pen"}) {
+      Task t = new ToDos(name);
+      t.markDone();
+      t.setDoneOn(LocalDate.of(2026, 1, 5));
+      tasks.add(t);
+    }
+    new Storage(file).save(tasks);
+    Storage archiving = new Storage(file);
+    archiving.setArchiveBefore(LocalDate.of(2026, 2, 1));
+    archiving.load();
+
+    Path archive = dir.resolve("tasks.txt.archive");
+    byte[] before = Files.readAllBytes(archive);
+    archiving.markRestored(new int[] {1});
+    byte[] after = Files.readAllBytes(archive);
+    assertTrue(after.length > before.length);
+    assertTrue(Arrays.equals(before, Arrays.copyOf(after, before.length))); // untouched
+    assertFalse(Files.exists(dir.resolve("tasks.txt.archive.tmp")));
+    List<Archive.Entry> left = archiving.findArchived("");
+    assertEquals(1, left.size());
+    assertEquals(2, left.get(0).number());
+  }
+
+  @Test
+  void save_keepsTheTextFormatUnlessBinaryIsAskedFor() throws Exception {
+    Path file = dir.resolve("tasks.txt");
+    Files.writeString(file, "T | 0 | read book" + System.lineSeparator());
+    Storage storage = new Storage(file.toString());
+    storage.save(storage.load());
+    assertTrue(Files.readString(file).contains("T | 0 | read book"));
+    assertEquals(1, new Storage(file.toString()).load().size());
+  }
+
+  @Test
+  void backgroundWriter_recoversFromAFailedWrite() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, 5);
+    CommandEngine engine = new CommandEngine(new TaskList(storage.load()), storage);
+    Path journal = dir.resolve("tasks.txt.log");
+    Files.createDirectories(journal); // appending to a directory fails
+
+    engine.execute("add");
+    engine.execute("t a");
+    engine.execute("done");
+    assertTrue(waitForFailure(storage));
+    engine.flush(); // reports nothing: the whole list is saved instead
+    assertFalse(storage.needsCompaction());
+    assertEquals(1, new Storage(file).load().size());
+
+    engine.execute("add");
+    engine.execute("t b"); // later writes go ahead
+    engine.execute("done");
+    engine.flush();
+    assertEquals(2, new Storage(file).load().size());
+  }
+
+  /** Waits up to a second for the writer to fail; returns false if it does not. */
+  private static boolean waitForFailure(Storage storage) throws InterruptedException {
+    for (int i = 0; i < 200 && !storage.needsCompaction(); i++) {
+      Thread.sleep(5);
+    }
+    return storage.needsCompaction();
+  }
+
+  @Test
+  void searchIndex_answersFindWithoutLoading() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, 0, Storage.Format.BINARY);
+    storage.load();
+    List<Task> tasks = new ArrayList<>();
+    tasks.add(new ToDos("read book"));
+    tasks.add(new ToDos("buy milk"));
+    tasks.add(new Deadlines("return Book", "2026-03-01"));
+    storage.save(tasks);
+    assertNull(new Storage(file).findWithoutLoading("book")); // no sidecar yet
+    storage.writeSearchIndex();
+
+    storage.appendAdd(new ToDos("bookshelf"));
+    storage.appendRemove(1);
+    storage.appendUpdate(1, new ToDos("buy notebook"));
+    List<String> expected = new ArrayList<>();
+    for (Task t : new Storage(file).load()) {
+      if (t.getName().toLowerCase().contains("book")) {
+        expected.add(t.toString());
+      }
+    }
+    assertEquals(3, expected.size());
+    Storage finder = new Storage(file); // keeps its index between searches, as Yap's does
+    assertEquals(expected, names(finder.findWithoutLoading("BOOK")));
+    assertEquals(3, finder.findWithoutLoading("ook").size()); // inside a token too
+
+    storage.save(List.of(new ToDos("read book")));
+    assertNull(finder.findWithoutLoading("book")); // stale after a new snapshot
+    storage.writeSearchIndex();
+    assertEquals(List.of("[T][ ] read book"), names(finder.findWithoutLoading("book")));
+
+    Path sidecar = dir.resolve("tasks.txt.idx");
+    byte[] torn = Files.readAllBytes(sidecar);
+    torn[torn.length - 1] ^= 1; // same length and header, body no longer matches its CRC
+    Files.write(sidecar, torn);
+    assertNull(new Storage(file).findWithoutLoading("book"));
+    storage.writeSearchIndex(); // the torn sidecar was dropped, so this builds it again
+    assertEquals(List.of("[T][ ] read book"), names(new Storage(file).findWithoutLoading("book")));
+  }
+
+  @Test
+  void searchIndex_answersFromATextSnapshotToo() throws Exception {
+    String file = dir.resolve("tasks.txt").toString();
+    Storage storage = new Storage(file);
+    storage.load();
+    storage.save(List.of(new ToDos("read book"), new ToDos("buy milk"),
+        new ToDos("bookshelf caf\u00e9"), new Deadlines("return Book", "2026-03-01")));
+    storage.writeSearchIndex();
+    storage.appendAdd(new ToDos("notebook"));
+
+    assertEquals(List.of("[T][ ] read book", "[T][ ] bookshelf caf\u00e9",
+        "[D][ ] return Book (by: Mar 01 2026)", "[T][ ] notebook"),
+        names(new Storage(file).findWithoutLoading("book")));
+    assertEquals(List.of("[T][ ] bookshelf caf\u00e9"),
+        names(new Storage(file).findWithoutLoading("kshe")));
+    assertEquals(List.of("[T][ ] bookshelf caf\u00e9"),
+        names(new Storage(file).findWithoutLoading("F\u00c9")));
+    assertTrue(new Storage(file).findWithoutLoading("zebra").isEmpty());
+  }
+
+  private static List<String> names(List<Task> tasks) {
+    List<String> out = new ArrayList<>();
+    for (Task t : tasks) {
+      out.add(t.toString());
+    }
+    return out;
+  }
+}
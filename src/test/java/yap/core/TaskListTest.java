@@ -6,7 +6,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import yap.task.ColumnarTasks;
 import yap.task.Deadlines;
+import yap.task.Events;
 import yap.task.Task;
 import yap.task.TaskList;
 import yap.task.ToDos;
@@ -66,6 +68,91 @@ public class TaskListTest {
     assertEquals(2, (int) hits.get(1));
   }
 
+  @Test
+  void findIndices_followsRemovalsAndRenames() {
+    TaskList list = new TaskList();
+    list.add(new ToDos("read book"));
+    list.add(new ToDos("exercise"));
+    list.add(new ToDos("notebook check"));
+
+    list.remove(1);
+    list.get(1).setName("bookshelf");
+
+    assertEquals(java.util.List.of(1, 2), list.findIndices("book"));
+    assertEquals(java.util.List.of(2), list.findIndices("k ch"));
+    assertTrue(list.findIndices("exercise").isEmpty());
+  }
+
+  @Test
+  void indexOfName_returnsFirstOfDuplicatesAndTracksEdits() {
+    TaskList list = new TaskList();
+    list.add(new ToDos("a"));
+    list.add(new ToDos("dup"));
+    list.add(new ToDos("dup"));
+
+    assertEquals(2, list.indexOfName("dup"));
+    assertEquals(java.util.List.of(2, 3), list.indicesOfName("dup"));
+
+    list.remove(1);
+    list.get(1).setName("renamed");
+    assertEquals(2, list.indexOfName("dup"));
+    assertEquals(1, list.indexOfName("renamed"));
+    assertEquals(-1, list.indexOfName("a"));
+  }
+
+  @Test
+  void snapshot_isUnaffectedByLaterChanges() {
+    TaskList list = new TaskList();
+    list.add(new ToDos("a"));
+    list.add(new ToDos("b"));
+
+    TaskList.Snapshot before = list.snapshot();
+    assertTrue(before == list.snapshot());
+
+    list.remove(1);
+    list.add(new ToDos("c"));
+
+    assertEquals(2, before.size());
+    assertEquals("a", before.get(0).getName());
+    assertTrue(list.snapshot().version() > before.version());
+    assertEquals("c", list.snapshot().get(1).getName());
+    assertEquals("2. [T][ ] b", before.render(2, 1)); // pages of a listing read the same
+  }
+
+  @Test
+  void dateQueries_followEditsAndCompletion() {
+    TaskList list = new TaskList();
+    list.add(new Deadlines("essay", "2019-12-02"));
+    list.add(new ToDos("read"));
+    list.add(new Events("meet", "2019-12-05", "1800", "2000"));
+    Deadlines later = new Deadlines("report", "2020-01-10");
+    list.add(later);
+
+    assertEquals(java.util.List.of(1, 3), list.indicesBetween(
+        java.time.LocalDate.parse("2019-12-01"), java.time.LocalDate.parse("2019-12-31")));
+
+    later.setBy("2019-12-03");
+    list.get(1).markDone();
+    assertEquals(java.util.List.of(3, 4), list.indicesOverdue(java.time.LocalDate.parse("2020-01-01")));
+  }
+
+  @Test
+  void overlappingEvents_areDetectedAndFollowEdits() {
+    TaskList list = new TaskList();
+    list.add(new Events("a", "2019-12-03", "1800", "2000"));
+    list.add(new Events("b", "2019-12-03", "1900", "1930"));
+    Events c = new Events("c", "2019-12-03", "2000", "2100"); // starts as a ends: no clash
+    list.add(c);
+
+    assertTrue(list.indicesOverlapping(c).isEmpty());
+    assertEquals(1, list.conflictingPairs().size());
+
+    c.setStart("1945");
+    assertEquals(java.util.List.of(1), list.indicesOverlapping(c));
+    assertEquals(2, list.conflictingPairs().size());
+    assertEquals(3, list.conflictingPairs().get(1)[1]);
+  }
+
   @Test
   void renderByIndices_formatsWithNumbers() {
     TaskList list = new TaskList();
@@ -73,4 +160,118 @@ public class TaskListTest {
     var out = list.renderByIndices(java.util.List.of(1));
     assertTrue(out.startsWith("1.[T]")); // depends on your Task.toString()
   }
+
+  @Test
+  void render_refreshesCachedLinesAfterEdits() {
+    TaskList list = new TaskList();
+    Deadlines essay = new Deadlines("essay", "2019-12-02");
+    list.add(new ToDos("100% done"));
+    list.add(essay);
+    assertEquals("1. [T][ ] 100% done" + System.lineSeparator()
+        + "2. [D][ ] essay (by: Dec 02 2019)", list.render());
+
+    essay.setBy("2019-12-09");
+    essay.markDone();
+    assertEquals("[D][X] essay (by: Dec 09 2019)", essay.toString());
+    assertTrue(list.render().endsWith("2. [D][X] essay (by: Dec 09 2019)"));
+  }
+
+  @Test
+  void renderTo_streamsTheSameTextAsRender() throws Exception {
+    TaskList list = new TaskList();
+    for (int i = 1; i <= 600; i++) {
+      list.add(new ToDos("task " + i));
+    }
+    StringBuilder streamed = new StringBuilder();
+    list.renderTo(streamed, 1, list.size());
+    assertEquals(list.render(), streamed.toString());
+    assertEquals("599. [T][ ] task 599" + System.lineSeparator() + "600. [T][ ] task 600",
+        list.render(599, 2));
+  }
+
+  @Test
+  void removeAll_compactsOnceAndKeepsIndexesInStep() {
+    TaskList list = new TaskList();
+    for (int i = 1; i <= 6; i++) {
+      list.add(new ToDos("task " + i));
+    }
+    TaskList.Snapshot before = list.snapshot();
+
+    assertEquals(3, list.removeAll(new int[] {1, 3, 4}).size());
+
+    assertEquals(3, list.size());
+    assertEquals(6, before.size());
+    assertEquals(2, list.indexOfName("task 5"));
+    assertEquals(java.util.List.of(3), list.findIndices("6"));
+  }
+
+  @Test
+  void insertAll_undoesRemoveAllInOnePass() {
+    TaskList list = new TaskList();
+    for (int i = 1; i <= 6; i++) {
+      list.add(new ToDos("task " + i));
+    }
+    String original = list.render();
+    int[] picked = {1, 3, 6};
+    TaskList.Snapshot before = list.snapshot();
+
+    list.insertAll(picked, list.removeAll(picked));
+
+    assertEquals(original, list.render());
+    assertEquals(6, before.size());
+    assertEquals(6, list.indexOfName("task 6"));
+    assertEquals(java.util.List.of(3), list.findIndices("3"));
+  }
+
+  @Test
+  void columnarTasks_keepEveryFieldAcrossEdits() {
+    Deadlines essay = new Deadlines("essay über Kafka", "2019-12-02");
+    essay.markDone();
+    essay.setDoneOn(java.time.LocalDate.parse("2019-12-01"));
+    java.util.List<Task> original = java.util.List.of(new ToDos("read"), essay,
+        new Events("meet", "2019-12-05", "1830", "2000"), new Task("plain"));
+    ColumnarTasks store = new ColumnarTasks(original);
+
+    assertEquals(original.toString(), store.toString());
+    assertEquals(java.time.LocalDate.parse("2019-12-01"), store.get(1).getDoneOn());
+    assertTrue(store.get(1) != store.get(1)); // a new task on every get
+
+    store.remove(0);
+    store.add(1, new ToDos("inserted"));
+    store.set(3, new ToDos("replaced"));
+    for (int i = 0; i < 5_000; i++) { // churn enough names to compact the arena
+      store.set(2, new ToDos("churn " + i));
+    }
+    assertEquals("[[D][X] essay über Kafka (by: Dec 02 2019), [T][ ] inserted, [T][ ] churn 4999,"
+        + " [T][ ] replaced]", store.toString());
+  }
+
+  @Test
+  void nameIndex_staysExactThroughManyRenamesAndRemovals() {
+    TaskList list = new TaskList();
+    for (int i = 0; i < 3_000; i++) {
+      list.add(new ToDos("task " + i));
+    }
+    for (int i = 1; i <= list.size(); i++) { // leaves stale entries behind, then rebuilds
+      list.get(i).setName("chore " + i);
+      list.get(i).setName("task " + i);
+    }
+    int[] odd = new int[1_500];
+    for (int i = 0; i < odd.length; i++) {
+      odd[i] = 2 * i + 1;
+    }
+    list.removeAll(odd);
+
+    java.util.List<Integer> scanned = new java.util.ArrayList<>();
+    for (int i = 1; i <= list.size(); i++) {
+      if (list.get(i).getName().contains("task 10")) {
+        scanned.add(i);
+      }
+    }
+    assertEquals(56, scanned.size());
+    assertEquals(scanned, list.findIndices("TASK 10"));
+    assertTrue(list.findIndices("chore").isEmpty());
+    assertEquals(250, list.indexOfName("task 500"));
+    assertEquals(-1, list.indexOfName("task 499"));
+  }
 }